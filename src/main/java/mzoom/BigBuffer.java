@@ -0,0 +1,137 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Off-heap array of ints or longs with long-based indexing, backed by direct or memory-mapped buffers of at most 1GB each
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class BigBuffer {
+
+    private static final int segmentBits = 30;
+    private static final long segmentSize = 1L << segmentBits; // multiple of 8, so no element spans two segments
+    private static final long segmentMask = segmentSize - 1;
+
+    private final ByteBuffer[] segments;
+    private final long bytes;
+
+    private BigBuffer(final ByteBuffer[] segments, final long bytes) {
+        this.segments = segments;
+        this.bytes = bytes;
+    }
+
+    /**
+     * allocate a zero-filled off-heap buffer
+     * @param bytes size in bytes
+     * @return allocated buffer
+     */
+    public static BigBuffer allocate(final long bytes) {
+        final ByteBuffer[] segments = new ByteBuffer[numSegments(bytes)];
+        for(int segment = 0; segment < segments.length; segment++) {
+            final int size = (int) Math.min(segmentSize, bytes - segment * segmentSize);
+            segments[segment] = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return new BigBuffer(segments, bytes);
+    }
+
+    /**
+     * map a region of the given file
+     * @param channel file
+     * @param position start of the region, which should be a multiple of 8
+     * @param bytes size of the region in bytes
+     * @param mode mapping mode
+     * @return mapped buffer
+     * @throws IOException
+     */
+    public static BigBuffer map(final FileChannel channel, final long position, final long bytes, final FileChannel.MapMode mode) throws IOException {
+        final ByteBuffer[] segments = new ByteBuffer[numSegments(bytes)];
+        for(int segment = 0; segment < segments.length; segment++) {
+            final long start = segment * segmentSize;
+            segments[segment] = channel.map(mode, position + start, Math.min(segmentSize, bytes - start)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return new BigBuffer(segments, bytes);
+    }
+
+    private static int numSegments(final long bytes) {
+        return (int) ((bytes + segmentSize - 1) >>> segmentBits);
+    }
+
+    /**
+     * @return size in bytes
+     */
+    public long bytes() {
+        return bytes;
+    }
+
+    public int getInt(final long index) {
+        final long offset = index << 2;
+        return segments[(int) (offset >>> segmentBits)].getInt((int) (offset & segmentMask));
+    }
+
+    public void putInt(final long index, final int value) {
+        final long offset = index << 2;
+        segments[(int) (offset >>> segmentBits)].putInt((int) (offset & segmentMask), value);
+    }
+
+    public long getLong(final long index) {
+        final long offset = index << 3;
+        return segments[(int) (offset >>> segmentBits)].getLong((int) (offset & segmentMask));
+    }
+
+    public void putLong(final long index, final long value) {
+        final long offset = index << 3;
+        segments[(int) (offset >>> segmentBits)].putLong((int) (offset & segmentMask), value);
+    }
+
+    /**
+     * copy ints from the given array
+     * @param index index (in ints) of the first int to write
+     * @param values array to copy
+     * @param offset start in the array
+     * @param length number of ints to copy
+     */
+    public void putInts(long index, final int[] values, int offset, int length) {
+        while(length > 0) {
+            final long byteOffset = index << 2;
+            final ByteBuffer segment = segments[(int) (byteOffset >>> segmentBits)].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            segment.position((int) (byteOffset & segmentMask));
+            final int count = Math.min(length, segment.remaining() / 4);
+            segment.asIntBuffer().put(values, offset, count);
+            index += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * @return a writable off-heap copy of this buffer
+     */
+    public BigBuffer copy() {
+        final BigBuffer copy = allocate(bytes);
+        for(int segment = 0; segment < segments.length; segment++) {
+            final ByteBuffer source = segments[segment].duplicate();
+            source.clear();
+            copy.segments[segment].put(source);
+            copy.segments[segment].clear();
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,43 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+/**
+ * Array of bytes with long-based indexing (used for per-tuple states)
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class BigByteArray {
+
+    private static final int chunkBits = 30;
+    private static final long chunkMask = (1L << chunkBits) - 1;
+
+    private final byte[][] chunks;
+
+    public BigByteArray(long length) {
+        chunks = new byte[(int) ((length + chunkMask) >>> chunkBits)][];
+        for(int chunk = 0; chunk < chunks.length; chunk++) {
+            chunks[chunk] = new byte[(int) Math.min(chunkMask + 1, length - ((long) chunk << chunkBits))];
+        }
+    }
+
+    public byte get(long index) {
+        return chunks[(int) (index >>> chunkBits)][(int) (index & chunkMask)];
+    }
+
+    public void set(long index, byte value) {
+        chunks[(int) (index >>> chunkBits)][(int) (index & chunkMask)] = value;
+    }
+}
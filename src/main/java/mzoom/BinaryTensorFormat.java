@@ -0,0 +1,652 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary columnar format for tensors.
+ *
+ * Layout (little endian, every section starts at a multiple of 8 bytes):
+ * header (magic, version, dimension, bytes per tuple id, omega, mass, cardinalities),
+ * dictionaries (n -> byte offsets of the values (long[cardinality+1]) followed by their UTF-8 bytes),
+ * attribute columns (n -> int[omega]), measure column (int[omega]),
+ * inverted indices in CSR format (n -> offsets (long[cardinality+1]) followed by tuple ids (int[omega], or long[omega] if omega exceeds the range of int or if requested by MappedTensorLoader.convert)),
+ * and a CRC32 checksum of all the preceding bytes.
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class BinaryTensorFormat {
+
+    public static final int magic = 0x42545a4d; // "MZTB"
+    public static final int version = 1;
+
+    /**
+     * maximum number of bytes mapped at once
+     */
+    private static final int windowSize = 1 << 30;
+
+    private static final Charset utf8 = Charset.forName("UTF-8");
+
+    /**
+     * check whether the given file is a tensor in the binary format
+     * @param path path of the file
+     * @return true if the file starts with the magic number of the format
+     * @throws IOException
+     */
+    public static boolean isBinary(final String path) throws IOException {
+        final File file = new File(path);
+        if(!file.isFile() || file.length() < 8) {
+            return false;
+        }
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            final ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            in.getChannel().read(buffer, 0);
+            return buffer.getInt(0) == magic;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * write the given tensor in the binary format
+     * @param tensor tensor to write
+     * @param path path of the output file
+     * @throws IOException
+     */
+    public static void write(final Tensor tensor, final String path) throws IOException {
+        final int dimension = tensor.dimension;
+        final long omega = tensor.omega;
+        final boolean longTupleIds = omega > Integer.MAX_VALUE;
+        final Output out = new Output(path);
+        try {
+            writeHeader(out, dimension, longTupleIds, omega, tensor.mass, tensor.cardinalities, tensor.intToStrValue);
+
+            for(int dim = 0; dim < dimension; dim++) { // attribute columns
+                if(tensor.attributeColumns != null) {
+                    out.writeInts(tensor.attributeColumns[dim], 0, (int) omega);
+                }
+                else {
+                    for(long i = 0; i < omega; i++) {
+                        out.writeInt(tensor.attributeValue(dim, i));
+                    }
+                }
+                out.align();
+            }
+            if(tensor.measureValues != null) { // measure column
+                out.writeInts(tensor.measureValues, 0, (int) omega);
+            }
+            else {
+                for(long i = 0; i < omega; i++) {
+                    out.writeInt(tensor.measureValue(i));
+                }
+            }
+            out.align();
+
+            for(int dim = 0; dim < dimension; dim++) { // inverted indices
+                for(int value = 0; value < tensor.cardinalities[dim]; value++) {
+                    out.writeLong(tensor.indexStart(dim, value));
+                }
+                out.writeLong(omega);
+                if(tensor.attributeToTuples != null) {
+                    out.writeInts(tensor.attributeToTuples[dim], 0, (int) omega);
+                }
+                else {
+                    for(long position = 0; position < omega; position++) {
+                        if(longTupleIds) {
+                            out.writeLong(tensor.indexedTuple(dim, position));
+                        }
+                        else {
+                            out.writeInt((int) tensor.indexedTuple(dim, position));
+                        }
+                    }
+                }
+                out.align();
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * write the header and the dictionaries
+     */
+    private static void writeHeader(final Output out, final int dimension, final boolean longTupleIds, final long omega, final long mass, final int[] cardinalities, final String[][] intToStrValue) throws IOException {
+        out.writeInt(magic);
+        out.writeInt(version);
+        out.writeInt(dimension);
+        out.writeInt(longTupleIds ? 8 : 4); // bytes per tuple id
+        out.writeLong(omega);
+        out.writeLong(mass);
+        out.writeInts(cardinalities, 0, dimension);
+        out.align();
+
+        for(int dim = 0; dim < dimension; dim++) { // dictionaries
+            final int cardinality = cardinalities[dim];
+            final byte[][] values = new byte[cardinality][];
+            long offset = 0;
+            out.writeLong(offset);
+            for(int value = 0; value < cardinality; value++) {
+                values[value] = intToStrValue[dim][value].getBytes(utf8);
+                offset += values[value].length;
+                out.writeLong(offset);
+            }
+            for(int value = 0; value < cardinality; value++) {
+                out.writeBytes(values[value]);
+            }
+            out.align();
+        }
+    }
+
+    /**
+     * read a tensor in the binary format
+     * @param path path of the input file
+     * @param verify whether to verify the checksum
+     * @return tensor
+     * @throws IOException
+     */
+    public static Tensor read(final String path, final boolean verify) throws IOException {
+        final Input in = new Input(path);
+        try {
+            if(in.readInt() != magic) {
+                throw new IOException(path + " is not a tensor in the binary format");
+            }
+            final int fileVersion = in.readInt();
+            if(fileVersion != version) {
+                throw new IOException("Unsupported version of the binary format: " + fileVersion);
+            }
+            final int dimension = in.readInt();
+            final int tupleIdBytes = in.readInt();
+            final long omegaLong = in.readLong();
+            if(omegaLong > Integer.MAX_VALUE - 8) {
+                throw new IOException("Too many tuples to be loaded in Java arrays (" + omegaLong + "), use OffHeapTensor.map instead");
+            }
+            final int omega = (int) omegaLong;
+            final long mass = in.readLong();
+            final int[] cardinalities = new int[dimension];
+            in.readInts(cardinalities, 0, dimension);
+            in.align();
+
+            final String[][] intToStrValue = new String[dimension][];
+            for(int dim = 0; dim < dimension; dim++) {
+                final int cardinality = cardinalities[dim];
+                final long[] offsets = new long[cardinality + 1];
+                for(int value = 0; value <= cardinality; value++) {
+                    offsets[value] = in.readLong();
+                }
+                intToStrValue[dim] = new String[cardinality];
+                for(int value = 0; value < cardinality; value++) {
+                    final byte[] bytes = new byte[(int) (offsets[value + 1] - offsets[value])];
+                    in.readBytes(bytes);
+                    intToStrValue[dim][value] = new String(bytes, utf8);
+                }
+                in.align();
+            }
+
+            final int[][] attributeColumns = new int[dimension][omega];
+            for(int dim = 0; dim < dimension; dim++) {
+                in.readInts(attributeColumns[dim], 0, omega);
+                in.align();
+            }
+            final int[] measureValues = new int[omega];
+            in.readInts(measureValues, 0, omega);
+            in.align();
+
+            final int[][] attributeToValueToOffset = new int[dimension][];
+            final int[][] attributeToTuples = new int[dimension][omega];
+            for(int dim = 0; dim < dimension; dim++) {
+                final int cardinality = cardinalities[dim];
+                attributeToValueToOffset[dim] = new int[cardinality + 1];
+                for(int value = 0; value <= cardinality; value++) {
+                    attributeToValueToOffset[dim][value] = (int) in.readLong();
+                }
+                if(tupleIdBytes == 8) {
+                    for(int position = 0; position < omega; position++) {
+                        attributeToTuples[dim][position] = (int) in.readLong();
+                    }
+                }
+                else {
+                    in.readInts(attributeToTuples[dim], 0, omega);
+                }
+                in.align();
+            }
+
+            if(verify) {
+                in.verify();
+            }
+            return new Tensor(dimension, cardinalities, omega, attributeColumns, attributeToValueToOffset, attributeToTuples, measureValues, mass, intToStrValue);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * map a tensor in the binary format without copying its columns and indices (the checksum is not verified)
+     * @param path path of the input file
+     * @return mapped tensor
+     * @throws IOException
+     */
+    public static OffHeapTensor map(final String path) throws IOException {
+        final Input in = new Input(path);
+        try {
+            if(in.readInt() != magic) {
+                throw new IOException(path + " is not a tensor in the binary format");
+            }
+            final int fileVersion = in.readInt();
+            if(fileVersion != version) {
+                throw new IOException("Unsupported version of the binary format: " + fileVersion);
+            }
+            final int dimension = in.readInt();
+            final int tupleIdBytes = in.readInt();
+            final long omega = in.readLong();
+            final long mass = in.readLong();
+            final int[] cardinalities = new int[dimension];
+            in.readInts(cardinalities, 0, dimension);
+            in.align();
+
+            final String[][] intToStrValue = new String[dimension][];
+            for(int dim = 0; dim < dimension; dim++) {
+                final int cardinality = cardinalities[dim];
+                final long[] offsets = new long[cardinality + 1];
+                for(int value = 0; value <= cardinality; value++) {
+                    offsets[value] = in.readLong();
+                }
+                intToStrValue[dim] = new String[cardinality];
+                for(int value = 0; value < cardinality; value++) {
+                    final byte[] bytes = new byte[(int) (offsets[value + 1] - offsets[value])];
+                    in.readBytes(bytes);
+                    intToStrValue[dim][value] = new String(bytes, utf8);
+                }
+                in.align();
+            }
+
+            final BigBuffer[] columns = new BigBuffer[dimension];
+            for(int dim = 0; dim < dimension; dim++) {
+                columns[dim] = in.map(4L * omega);
+            }
+            final BigBuffer measures = in.map(4L * omega);
+            final BigBuffer[] offsets = new BigBuffer[dimension];
+            final BigBuffer[] tuples = new BigBuffer[dimension];
+            for(int dim = 0; dim < dimension; dim++) {
+                offsets[dim] = in.map(8L * (cardinalities[dim] + 1));
+                tuples[dim] = in.map(tupleIdBytes * omega);
+            }
+            return new OffHeapTensor(dimension, cardinalities, omega, columns, offsets, tuples, tupleIdBytes == 8, measures, mass, intToStrValue);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * compute the CRC32 checksum of the first given number of bytes of the given file
+     */
+    private static long checksum(final FileChannel channel, final long end) throws IOException {
+        final CRC32 crc = new CRC32();
+        for(long start = 0; start < end; start += windowSize) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, end - start)));
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Writer which fills the columns and the inverted indices of a file in the binary format tuple by tuple through memory-mapped sections,
+     * so that a tensor can be written without being stored in memory.
+     * The number of tuples with each attribute value should be known in advance, and tuples should be written in the order of their ids.
+     */
+    static final class TupleWriter {
+
+        private final RandomAccessFile file;
+        private final int dimension;
+        private final BigBuffer[] columns; // n -> mapped attribute column
+        private final BigBuffer measures; // mapped measure column
+        private final BigBuffer[] tuples; // n -> mapped tuple ids sorted by the n-th attribute values
+        private final long[][] cursors; // (n, value) -> position in tuples[n] where the next tuple with the value is written
+        private final boolean longTupleIds;
+        private final long end; // end of the sections (start of the checksum)
+
+        /**
+         * write the header and the dictionaries, and map the remaining sections
+         * @param path path of the output file
+         * @param dimension number of attributes
+         * @param omega number of tuples
+         * @param mass sum of the measure attribute values
+         * @param cardinalities n -> cardinality of the n-th attribute
+         * @param intToStrValue (n, value) -> str attribute value mapped to the given integer value of the n-th attribute
+         * @param valueCounts (n, value) -> number of tuples with the given value for the n-th attribute
+         * @param longTupleIds whether to store tuple ids as longs (required if omega exceeds the range of int)
+         * @throws IOException
+         */
+        TupleWriter(final String path, final int dimension, final long omega, final long mass, final int[] cardinalities, final String[][] intToStrValue, final long[][] valueCounts, final boolean longTupleIds) throws IOException {
+            if(omega > Integer.MAX_VALUE && !longTupleIds) {
+                throw new IllegalArgumentException("Tuple ids of " + omega + " tuples should be stored as longs");
+            }
+            final Output out = new Output(path);
+            try {
+                writeHeader(out, dimension, longTupleIds, omega, mass, cardinalities, intToStrValue);
+            }
+            finally {
+                out.close(false);
+            }
+
+            this.dimension = dimension;
+            this.longTupleIds = longTupleIds;
+            this.columns = new BigBuffer[dimension];
+            this.tuples = new BigBuffer[dimension];
+            this.cursors = new long[dimension][];
+            final long[] columnStarts = new long[dimension];
+            final long[] offsetStarts = new long[dimension];
+            final long[] tupleStarts = new long[dimension];
+            long position = out.position();
+            for(int dim = 0; dim < dimension; dim++) {
+                columnStarts[dim] = position;
+                position = aligned(position + 4L * omega);
+            }
+            final long measureStart = position;
+            position = aligned(position + 4L * omega);
+            for(int dim = 0; dim < dimension; dim++) {
+                offsetStarts[dim] = position;
+                tupleStarts[dim] = position + 8L * (cardinalities[dim] + 1);
+                position = aligned(tupleStarts[dim] + (longTupleIds ? 8L : 4L) * omega);
+            }
+            this.end = position;
+
+            this.file = new RandomAccessFile(path, "rw");
+            try {
+                file.setLength(end + 8);
+                final FileChannel channel = file.getChannel();
+                for(int dim = 0; dim < dimension; dim++) {
+                    columns[dim] = BigBuffer.map(channel, columnStarts[dim], 4L * omega, FileChannel.MapMode.READ_WRITE);
+                }
+                this.measures = BigBuffer.map(channel, measureStart, 4L * omega, FileChannel.MapMode.READ_WRITE);
+                for(int dim = 0; dim < dimension; dim++) {
+                    final int cardinality = cardinalities[dim];
+                    final BigBuffer offsets = BigBuffer.map(channel, offsetStarts[dim], 8L * (cardinality + 1), FileChannel.MapMode.READ_WRITE);
+                    final long[] cursor = new long[cardinality];
+                    long offset = 0;
+                    for(int value = 0; value < cardinality; value++) {
+                        offsets.putLong(value, offset);
+                        cursor[value] = offset;
+                        offset += valueCounts[dim][value];
+                    }
+                    offsets.putLong(cardinality, offset);
+                    cursors[dim] = cursor;
+                    tuples[dim] = BigBuffer.map(channel, tupleStarts[dim], (longTupleIds ? 8L : 4L) * omega, FileChannel.MapMode.READ_WRITE);
+                }
+            }
+            catch(IOException e) {
+                file.close();
+                throw e;
+            }
+        }
+
+        private static long aligned(final long position) {
+            return (position + 7) / 8 * 8;
+        }
+
+        /**
+         * write a tuple
+         * @param tuple id of the tuple (the number of tuples written before)
+         * @param values n -> the n-th attribute value of the tuple
+         * @param measureValue measure attribute value of the tuple
+         */
+        void write(final long tuple, final int[] values, final int measureValue) {
+            for(int dim = 0; dim < dimension; dim++) {
+                final int value = values[dim];
+                columns[dim].putInt(tuple, value);
+                final long position = cursors[dim][value]++;
+                if(longTupleIds) {
+                    tuples[dim].putLong(position, tuple);
+                }
+                else {
+                    tuples[dim].putInt(position, (int) tuple);
+                }
+            }
+            measures.putInt(tuple, measureValue);
+        }
+
+        /**
+         * append the checksum and close the file
+         * @throws IOException
+         */
+        void close() throws IOException {
+            try {
+                final FileChannel channel = file.getChannel();
+                final ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putLong(0, checksum(channel, end));
+                channel.write(buffer, end);
+            }
+            finally {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Buffered output which keeps track of the position and the checksum
+     */
+    private static final class Output {
+
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(8388608).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32 crc = new CRC32();
+        private long position = 0;
+
+        Output(final String path) throws IOException {
+            this.file = new RandomAccessFile(path, "rw");
+            this.file.setLength(0);
+            this.channel = file.getChannel();
+        }
+
+        private void ensure(final int bytes) throws IOException {
+            if(buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer);
+            buffer.flip();
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void writeInt(final int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+            position += 4;
+        }
+
+        void writeLong(final long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+            position += 8;
+        }
+
+        void writeInts(final int[] values, int offset, int length) throws IOException {
+            while(length > 0) {
+                ensure(4);
+                final int count = Math.min(length, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(values, offset, count);
+                buffer.position(buffer.position() + 4 * count);
+                offset += count;
+                length -= count;
+                position += 4L * count;
+            }
+        }
+
+        void writeBytes(final byte[] values) throws IOException {
+            int offset = 0;
+            while(offset < values.length) {
+                ensure(1);
+                final int count = Math.min(values.length - offset, buffer.remaining());
+                buffer.put(values, offset, count);
+                offset += count;
+                position += count;
+            }
+        }
+
+        void align() throws IOException {
+            while(position % 8 != 0) {
+                ensure(1);
+                buffer.put((byte) 0);
+                position++;
+            }
+        }
+
+        long position() {
+            return position;
+        }
+
+        void close() throws IOException {
+            close(true);
+        }
+
+        /**
+         * @param writeChecksum whether to append the checksum of the written bytes
+         */
+        void close(final boolean writeChecksum) throws IOException {
+            flush();
+            if(writeChecksum) {
+                final long checksum = crc.getValue();
+                buffer.putLong(checksum);
+                buffer.flip();
+                while(buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            file.close();
+        }
+    }
+
+    /**
+     * Sequential input which maps the file window by window
+     */
+    private static final class Input {
+
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final long fileSize;
+        private MappedByteBuffer window = null;
+        private long windowStart = 0;
+        private long position = 0;
+
+        Input(final String path) throws IOException {
+            this.file = new RandomAccessFile(path, "r");
+            this.channel = file.getChannel();
+            this.fileSize = channel.size();
+        }
+
+        /**
+         * map a window starting at the current position if less than the given number of bytes are left in the current window
+         */
+        private void ensure(final int bytes) throws IOException {
+            if(window == null || position + bytes > windowStart + window.limit()) {
+                if(position + bytes > fileSize) {
+                    throw new IOException("Unexpected end of the file");
+                }
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(windowSize, fileSize - windowStart));
+                window.order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        int readInt() throws IOException {
+            ensure(4);
+            final int value = window.getInt((int) (position - windowStart));
+            position += 4;
+            return value;
+        }
+
+        long readLong() throws IOException {
+            ensure(8);
+            final long value = window.getLong((int) (position - windowStart));
+            position += 8;
+            return value;
+        }
+
+        void readInts(final int[] values, int offset, int length) throws IOException {
+            while(length > 0) {
+                ensure(4);
+                window.position((int) (position - windowStart));
+                final int count = Math.min(length, window.remaining() / 4);
+                window.asIntBuffer().get(values, offset, count);
+                offset += count;
+                length -= count;
+                position += 4L * count;
+            }
+        }
+
+        void readBytes(final byte[] values) throws IOException {
+            int offset = 0;
+            while(offset < values.length) {
+                ensure(1);
+                window.position((int) (position - windowStart));
+                final int count = Math.min(values.length - offset, window.remaining());
+                window.get(values, offset, count);
+                offset += count;
+                position += count;
+            }
+        }
+
+        void align() {
+            position = (position + 7) / 8 * 8;
+        }
+
+        /**
+         * map the given number of bytes from the current position (read-only) and move to the next aligned position after them
+         */
+        BigBuffer map(final long bytes) throws IOException {
+            if(position + bytes > fileSize) {
+                throw new IOException("Unexpected end of the file");
+            }
+            final BigBuffer buffer = BigBuffer.map(channel, position, bytes, FileChannel.MapMode.READ_ONLY);
+            position += bytes;
+            align();
+            return buffer;
+        }
+
+        /**
+         * compare the checksum of the bytes before the current position with the stored checksum
+         */
+        void verify() throws IOException {
+            final long end = position;
+            final long stored = readLong();
+            if(checksum(channel, end) != stored) {
+                throw new IOException("Checksum mismatch: the file is corrupted");
+            }
+        }
+
+        void close() throws IOException {
+            file.close();
+        }
+    }
+}
@@ -16,8 +16,7 @@
 package mzoom;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -32,21 +31,38 @@ public class BlockInfo {
     private byte[] attributes = null;
     private int[] attVals = null;
     private int size = 0;
+    private long offset = 0; // index of the first (attribute, value) pair of the block in the arrays or the file
     public String diskFilePath = null;
     private boolean useBuffer = false;
 
     public BlockInfo(int size, int[] blockCardinalities, byte[] attributes, int[] attVals) {
+        this(size, blockCardinalities, attributes, attVals, 0);
+    }
+
+    /**
+     * block consisting of the given number of (attribute, value) pairs in the given arrays, starting from the given offset
+     */
+    public BlockInfo(int size, int[] blockCardinalities, byte[] attributes, int[] attVals, int offset) {
         this.size = size;
         this.useBuffer = true;
         this.attributes = attributes;
         this.attVals = attVals;
+        this.offset = offset;
         this.blockCardinalities = blockCardinalities;
     }
 
     public BlockInfo(int size, int[] blockCardinalities, String diskFilePath) {
+        this(size, blockCardinalities, diskFilePath, 0);
+    }
+
+    /**
+     * block consisting of the given number of (attribute, value) records in the given OrderingFile, starting from the given record
+     */
+    public BlockInfo(int size, int[] blockCardinalities, String diskFilePath, long offset) {
         this.size = size;
         this.useBuffer = false;
         this.diskFilePath = diskFilePath;
+        this.offset = offset;
         this.blockCardinalities = blockCardinalities;
     }
 
@@ -56,22 +72,62 @@ public class BlockInfo {
             modeToAttVals[mode] = new HashSet<Integer>();
         }
         if(useBuffer) {
-            for (int i = 0; i < size; i++) {
+            for (int i = (int) offset; i < offset + size; i++) {
                 byte mode = attributes[i];
                 modeToAttVals[mode].add(attVals[i]);
             }
         }
         else {
-            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(diskFilePath), 8388608));
-            for(int i = 0; i < size; i++) {
-                byte mode = in.readByte();
-                modeToAttVals[mode].add(in.readInt());
+            OrderingFile.Reader in = new OrderingFile.Reader(diskFilePath, offset, size);
+            try {
+                while(in.next()) {
+                    byte mode = in.attribute();
+                    modeToAttVals[mode].add(in.value());
+                }
+            }
+            finally {
+                in.close();
             }
-            in.close();
         }
         return modeToAttVals;
     }
     
+    /**
+     * return the attribute values in the block in the compact form
+     * @param dimension number of attributes
+     * @return attribute values in the block
+     * @throws IOException
+     */
+    public BlockValues getBlockValues(int dimension) throws IOException {
+        final int[][] modeToAttVals = new int[dimension][];
+        for(int mode = 0; mode < dimension; mode++) {
+            modeToAttVals[mode] = new int[blockCardinalities[mode]];
+        }
+        final int[] modeToCount = new int[dimension];
+        if(useBuffer) {
+            for (int i = (int) offset; i < offset + size; i++) {
+                byte mode = attributes[i];
+                modeToAttVals[mode][modeToCount[mode]++] = attVals[i];
+            }
+        }
+        else {
+            OrderingFile.Reader in = new OrderingFile.Reader(diskFilePath, offset, size);
+            try {
+                while(in.next()) {
+                    byte mode = in.attribute();
+                    modeToAttVals[mode][modeToCount[mode]++] = in.value();
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        for(int mode = 0; mode < dimension; mode++) {
+            Arrays.sort(modeToAttVals[mode]);
+        }
+        return new BlockValues(modeToAttVals);
+    }
+
     public boolean[][] getBitMask(int dimension, int[] cardinalities) throws IOException {
 
         final boolean[][] modeToIndexToBeingIncluded = new boolean[dimension][];
@@ -80,37 +136,50 @@ public class BlockInfo {
         }
 
         if(useBuffer) {
-            for (int i = 0; i < size; i++) {
+            for (int i = (int) offset; i < offset + size; i++) {
                 byte mode = attributes[i];
                 modeToIndexToBeingIncluded[mode][attVals[i]] = true;
             }
         }
         else {
-            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(diskFilePath), 8388608));
-            for(int i = 0; i < size; i++) {
-                byte mode = in.readByte();
-                modeToIndexToBeingIncluded[mode][in.readInt()] = true;
+            OrderingFile.Reader in = new OrderingFile.Reader(diskFilePath, offset, size);
+            try {
+                while(in.next()) {
+                    byte mode = in.attribute();
+                    modeToIndexToBeingIncluded[mode][in.value()] = true;
+                }
+            }
+            finally {
+                in.close();
             }
-            in.close();
         }
 
         return modeToIndexToBeingIncluded;
     }
 
+    /**
+     * write the (attribute, value) pairs of the block to the given path in the format of OrderingFile
+     * @param tempLocalFilePath path of the file
+     * @return path of the file
+     * @throws IOException
+     */
     public String returnFileInfo(String tempLocalFilePath) throws IOException {
         if(useBuffer) {
             String newPath = tempLocalFilePath;
-            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(newPath), 8388608));
-            for(int i = 0; i < size; i++) {
-                out.writeByte(attributes[i]);
-                out.writeInt(attVals[i]);
+            OrderingFile.Writer out = new OrderingFile.Writer(newPath, size);
+            try {
+                for (int i = (int) offset; i < offset + size; i++) {
+                    out.write(attributes[i], attVals[i]);
+                }
+            }
+            finally {
+                out.close();
             }
-            out.close();
             return newPath;
         }
         else {
             String newPath = tempLocalFilePath;
-            Files.copy(new File(diskFilePath).toPath(), new File(newPath).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            OrderingFile.copy(diskFilePath, offset, size, newPath);
             return newPath;
         }
 
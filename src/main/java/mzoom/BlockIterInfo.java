@@ -15,7 +15,8 @@
 
 package mzoom;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
 
 /**
  * Order by which attribute values are removed
@@ -29,7 +30,7 @@ public class BlockIterInfo {
     private boolean useBuffer = true;
     private int cardinalitySum = 0;
     private int curIndex = 0;
-    private ObjectOutputStream out = null;
+    private OrderingFile.Writer out = null;
     private String orderingFilePath = null;
 
     public BlockIterInfo(int[] modeLengths) throws IOException {
@@ -42,61 +43,79 @@ public class BlockIterInfo {
         this.attVals = new int[cardinalitySum];
     }
     
+    /**
+     * keep the order on disk in the given file instead of in memory
+     * @param modeLengths cardinality of each attribute
+     * @param orderingFilePath path of the file, which is deleted when the block returned by returnBlock is cleared
+     * @throws IOException
+     */
+    public BlockIterInfo(int[] modeLengths, String orderingFilePath) throws IOException {
+        this.useBuffer = false;
+        this.dimension = modeLengths.length;
+        for(int mode = 0; mode < dimension; mode++) {
+            cardinalitySum += modeLengths[mode];
+        }
+        this.orderingFilePath = orderingFilePath;
+        this.out = new OrderingFile.Writer(orderingFilePath, cardinalitySum);
+    }
+
     public void addIterInfo(byte mode, int index) throws IOException {
         if(useBuffer) {
             attributes[curIndex] = mode;
             attVals[curIndex++] = index;
         }
         else {
-            out.writeByte(mode);
-            out.writeInt(index);
+            out.write(mode, index);
         }
     }
 
-    public BlockInfo returnBlock(int maxIter, String blockInfoPath) throws IOException {
+    /**
+     * delete the file of the order (if any) when no block is returned, since the file is otherwise deleted when the blocks are cleared
+     * @throws IOException
+     */
+    public void clear() throws IOException {
         if (out != null) {
             out.close();
+            out = null;
         }
-
-        if(useBuffer) { // write block info in memory
-            int[] modeLengths = new int[dimension];
-            int newLength = cardinalitySum - maxIter;
-            byte[] newModes = new byte[newLength];
-            for(int i = 0; i < newLength; i++) {
-                newModes[i] = attributes[i+maxIter];
-                modeLengths[attributes[i+maxIter]]++;
-            }
-            int[] newIndices = new int[newLength];
-            for(int i = 0; i < newLength; i++) {
-                newIndices[i] = attVals[i+maxIter];
-            }
-            return new BlockInfo(newLength, modeLengths, newModes, newIndices);
+        if (orderingFilePath != null) {
+            new File(orderingFilePath).delete();
         }
-        else { //write block info in disk
+    }
 
-            int[] modeLengths = new int[dimension];
-            int newLength = cardinalitySum - maxIter;
-            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(blockInfoPath), 8388608));
-            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(orderingFilePath), 8388608));
+    /**
+     * return the block consisting of the attribute values removed after the given number of iterations.
+     * the block refers to the suffix of the order without copying it
+     * @param maxIter number of attribute values removed before the block
+     * @param blockInfoPath not used (the block on disk refers to the file of the order)
+     * @return block
+     * @throws IOException
+     */
+    public BlockInfo returnBlock(int maxIter, String blockInfoPath) throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
 
-            for(int i = 0; i < maxIter; i++) { //throw away
-                in.readByte();
-                in.readInt();
+        int[] modeLengths = new int[dimension];
+        int newLength = cardinalitySum - maxIter;
+        if(useBuffer) { // block info in memory
+            for(int i = maxIter; i < cardinalitySum; i++) {
+                modeLengths[attributes[i]]++;
             }
-            for(int i = 0; i < newLength; i++) {
-                byte mode = in.readByte();
-                out.writeByte(mode);
-                modeLengths[mode]++;
-                out.writeInt(in.readInt());
+            return new BlockInfo(newLength, modeLengths, attributes, attVals, maxIter);
+        }
+        else { // block info in disk
+            OrderingFile.Reader in = new OrderingFile.Reader(orderingFilePath, maxIter, newLength);
+            try {
+                while(in.next()) {
+                    modeLengths[in.attribute()]++;
+                }
             }
-            in.close();
-            out.close();
-
-            if(new File(orderingFilePath).exists()) {
-                new File(orderingFilePath).delete();
+            finally {
+                in.close();
             }
-
-            return new BlockInfo(newLength, modeLengths, blockInfoPath);
+            return new BlockInfo(newLength, modeLengths, orderingFilePath, maxIter);
         }
     }
 }
@@ -0,0 +1,163 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Attribute values contained in a block, stored as a sorted array for each attribute (4 bytes per value)
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class BlockValues {
+
+    /**
+     * (attribute) -> sorted array of the attribute values in the block
+     */
+    private final int[][] attributeToValues;
+
+    /**
+     * @param attributeToValues (attribute) -> sorted array of the attribute values in the block, which should not contain duplicates
+     */
+    public BlockValues(int[][] attributeToValues) {
+        this.attributeToValues = attributeToValues;
+    }
+
+    /**
+     * @param attributeToValues (attribute) -> attribute values in the block
+     * @param dimension number of attributes
+     * @return the given attribute values in the compact form
+     */
+    public static BlockValues of(Set<Integer>[] attributeToValues, int dimension) {
+        final int[][] sortedValues = new int[dimension][];
+        for(int dim = 0; dim < dimension; dim++) {
+            final int[] values = new int[attributeToValues[dim].size()];
+            int index = 0;
+            for(int value : attributeToValues[dim]) {
+                values[index++] = value;
+            }
+            Arrays.sort(values);
+            sortedValues[dim] = values;
+        }
+        return new BlockValues(sortedValues);
+    }
+
+    /**
+     * @return number of attributes
+     */
+    public int dimension() {
+        return attributeToValues.length;
+    }
+
+    /**
+     * @param attribute attribute
+     * @return number of values of the given attribute in the block
+     */
+    public int size(int attribute) {
+        return attributeToValues[attribute].length;
+    }
+
+    /**
+     * @param attribute attribute
+     * @return sorted array of the values of the given attribute in the block (should not be modified)
+     */
+    public int[] values(int attribute) {
+        return attributeToValues[attribute];
+    }
+
+    /**
+     * @param attribute attribute
+     * @param value attribute value
+     * @return whether the given value of the given attribute is in the block
+     */
+    public boolean contains(int attribute, int value) {
+        return Arrays.binarySearch(attributeToValues[attribute], value) >= 0;
+    }
+
+    /**
+     * @param cardinalities n -> cardinality of the n-th attribute
+     * @return (attribute, value) -> whether the value is in the block
+     */
+    public boolean[][] getBitMask(int[] cardinalities) {
+        final boolean[][] attributeToValueToBeingIncluded = new boolean[attributeToValues.length][];
+        for(int dim = 0; dim < attributeToValues.length; dim++) {
+            attributeToValueToBeingIncluded[dim] = new boolean[cardinalities[dim]];
+            for(int value : attributeToValues[dim]) {
+                attributeToValueToBeingIncluded[dim][value] = true;
+            }
+        }
+        return attributeToValueToBeingIncluded;
+    }
+
+    /**
+     * @param attribute attribute
+     * @return read-only set view of the values of the given attribute in the block
+     */
+    public Set<Integer> asSet(final int attribute) {
+        final int[] values = attributeToValues[attribute];
+        return new AbstractSet<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    private int index = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < values.length;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if(index >= values.length) {
+                            throw new NoSuchElementException();
+                        }
+                        return values[index++];
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Integer && BlockValues.this.contains(attribute, (Integer) o);
+            }
+        };
+    }
+
+    /**
+     * @return (attribute) -> read-only set view of the values of the attribute in the block
+     */
+    @SuppressWarnings("unchecked")
+    public Set<Integer>[] asSets() {
+        final Set<Integer>[] sets = (Set<Integer>[]) new Set<?>[attributeToValues.length];
+        for(int dim = 0; dim < attributeToValues.length; dim++) {
+            sets[dim] = asSet(dim);
+        }
+        return sets;
+    }
+}
@@ -0,0 +1,285 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Writer of the blocks found, which routes each tuple to every block containing it in a single pass over the tensor.
+ * The blocks are divided among threads, each of which makes its own pass for its blocks
+ * (or one pass for each group of maxOpenBlocks blocks, so that the number of open files and the size of the routing bitsets are bounded).
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class BlockWriter {
+
+    /**
+     * size of the buffer of each output file
+     */
+    private static final int bufferSize = 1 << 16;
+
+    /**
+     * maximum number of blocks written at once by each thread (a multiple of 64)
+     */
+    private static final int maxOpenBlocks = 256;
+
+    private static final Charset charset = Charset.defaultCharset(); // the charset used by FileWriter
+
+    private static final byte[] lineSeparator = System.lineSeparator().getBytes(charset);
+
+    /**
+     * write blocks found to the given output folder
+     * @param output    output path
+     * @param tensor    tensor
+     * @param blocks   attribute values contained in each block found
+     * @param numThreads number of threads
+     * @throws IOException
+     */
+    public static void write(final String output, final Tensor tensor, final List<BlockValues> blocks, final int numThreads) throws IOException {
+        File dir = new File(output);
+        try{
+            dir.mkdirs();
+        }
+        catch(Exception e){
+        }
+
+        final int blockNum = blocks.size();
+        final int numTasks = Math.max(1, Math.min(numThreads, blockNum));
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numTasks);
+        for(int task = 0; task < numTasks; task++) {
+            final List<Integer> blockIndices = new ArrayList<Integer>();
+            for(int blockIndex = task; blockIndex < blockNum; blockIndex += numTasks) {
+                blockIndices.add(blockIndex);
+            }
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    writeBlocks(output, tensor, blocks, blockIndices);
+                    return null;
+                }
+            });
+        }
+        final ExecutorService pool = numTasks > 1 ? Executors.newFixedThreadPool(numTasks) : null;
+        try {
+            TensorMethods.invokeAll(pool, tasks);
+        }
+        finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * write the given blocks, making one pass over the tensor for the tuples of each group of at most maxOpenBlocks blocks
+     * (or fewer if the routing bitsets of the attribute with the most values would not fit in a Java array)
+     * @param output    output path
+     * @param tensor    tensor
+     * @param blocks   attribute values contained in each block found
+     * @param blockIndices indices of the blocks to write
+     * @throws IOException
+     */
+    private static void writeBlocks(final String output, final Tensor tensor, final List<BlockValues> blocks, final List<Integer> blockIndices) throws IOException {
+        int maxCardinality = 1;
+        for(int dim = 0; dim < tensor.dimension; dim++) {
+            maxCardinality = Math.max(maxCardinality, tensor.cardinalities[dim]);
+        }
+        final int maxWords = Math.max(1, Math.min(maxOpenBlocks / 64, (Integer.MAX_VALUE - 8) / maxCardinality));
+        for(int start = 0; start < blockIndices.size(); start += 64 * maxWords) {
+            writeGroup(output, tensor, blocks, blockIndices.subList(start, Math.min(blockIndices.size(), start + 64 * maxWords)));
+        }
+    }
+
+    /**
+     * write the given blocks, making one pass over the tensor for the tuples of all of them
+     * @param output    output path
+     * @param tensor    tensor
+     * @param blocks   attribute values contained in each block found
+     * @param blockIndices indices of the blocks to write
+     * @throws IOException
+     */
+    private static void writeGroup(final String output, final Tensor tensor, final List<BlockValues> blocks, final List<Integer> blockIndices) throws IOException {
+
+        final int dimension = tensor.dimension;
+        final String[][] intToStrValue = tensor.intToStrValue;
+        final int blockNum = blockIndices.size();
+        final int words = (blockNum + 63) / 64;
+
+        // (n, value * words + word) -> bits of the blocks (among the given ones) containing the given value of the n-th attribute
+        final long[][] attributeToValueToBlocks = new long[dimension][];
+        for(int dim = 0; dim < dimension; dim++) {
+            attributeToValueToBlocks[dim] = new long[Math.toIntExact(Math.multiplyExact((long) tensor.cardinalities[dim], words))];
+        }
+
+        //write attribute values
+        for(int block = 0; block < blockNum; block++) {
+            final int blockIndex = blockIndices.get(block);
+            final BlockValues blockValues = blocks.get(blockIndex);
+            final TextOutput out = new TextOutput(output + File.separator + "block_"+(blockIndex+1)+".attributes");
+            try {
+                for(int dim = 0; dim < dimension; dim++) {
+                    for(int value : blockValues.values(dim)) {
+                        attributeToValueToBlocks[dim][value * words + block / 64] |= 1L << (block % 64);
+                        out.writeInt(dim);
+                        out.writeByte(',');
+                        out.writeString(intToStrValue[dim][value]);
+                        out.newLine();
+                    }
+                }
+            }
+            finally {
+                out.close();
+            }
+        }
+
+        //write blocks
+        final TextOutput[] outs = new TextOutput[blockNum];
+        try {
+            for(int block = 0; block < blockNum; block++) {
+                outs[block] = new TextOutput(output + File.separator + "block_"+(blockIndices.get(block)+1)+".tuples");
+            }
+            final int[] tuple = new int[dimension];
+            for(long i=0; i<tensor.omega; i++) {
+                for(int dim = 0; dim < dimension; dim++) {
+                    tuple[dim] = tensor.attributeValue(dim, i);
+                }
+                for(int word = 0; word < words; word++) {
+                    long containingBlocks = -1L;
+                    for(int dim = 0; dim < dimension && containingBlocks != 0; dim++) {
+                        containingBlocks &= attributeToValueToBlocks[dim][tuple[dim] * words + word];
+                    }
+                    while(containingBlocks != 0) {
+                        final TextOutput out = outs[word * 64 + Long.numberOfTrailingZeros(containingBlocks)];
+                        for(int dim = 0; dim < dimension; dim++) {
+                            out.writeString(intToStrValue[dim][tuple[dim]]);
+                            out.writeByte(',');
+                        }
+                        out.writeInt(tensor.measureValue(i));
+                        out.newLine();
+                        containingBlocks &= containingBlocks - 1;
+                    }
+                }
+            }
+        }
+        finally {
+            for(TextOutput out : outs) {
+                if(out != null) {
+                    out.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Buffered text output which writes strings and numbers without creating intermediate strings
+     */
+    private static final class TextOutput {
+
+        private final FileOutputStream stream;
+        private final byte[] buffer = new byte[bufferSize];
+        private int position = 0;
+
+        TextOutput(final String path) throws IOException {
+            this.stream = new FileOutputStream(path);
+        }
+
+        private void ensure(final int bytes) throws IOException {
+            if(buffer.length - position < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            stream.write(buffer, 0, position);
+            position = 0;
+        }
+
+        void writeByte(final char c) throws IOException {
+            ensure(1);
+            buffer[position++] = (byte) c;
+        }
+
+        void writeBytes(final byte[] bytes) throws IOException {
+            if(bytes.length > buffer.length) {
+                flush();
+                stream.write(bytes);
+                return;
+            }
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeString(final String value) throws IOException {
+            final int length = value.length();
+            if(length > buffer.length) {
+                writeBytes(value.getBytes(charset));
+                return;
+            }
+            ensure(length);
+            for(int i = 0; i < length; i++) {
+                final char c = value.charAt(i);
+                if(c >= 0x80) { // encode the strings with non-ASCII characters by the charset
+                    writeBytes(value.substring(i).getBytes(charset));
+                    return;
+                }
+                buffer[position++] = (byte) c;
+            }
+        }
+
+        void writeInt(final int value) throws IOException {
+            ensure(11);
+            if(value == Integer.MIN_VALUE) {
+                writeBytes(Integer.toString(value).getBytes(charset));
+                return;
+            }
+            int remaining = value;
+            if(remaining < 0) {
+                buffer[position++] = '-';
+                remaining = -remaining;
+            }
+            int digits = 1;
+            for(int bound = 10; digits < 10 && remaining >= bound; bound *= 10) {
+                digits++;
+            }
+            for(int pos = position + digits - 1; pos >= position; pos--) {
+                buffer[pos] = (byte) ('0' + remaining % 10);
+                remaining /= 10;
+            }
+            position += digits;
+        }
+
+        void newLine() throws IOException {
+            writeBytes(lineSeparator);
+        }
+
+        void close() throws IOException {
+            try {
+                flush();
+            }
+            finally {
+                stream.close();
+            }
+        }
+    }
+}
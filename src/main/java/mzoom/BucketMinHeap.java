@@ -0,0 +1,225 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+/**
+ * Bucket queue for bounded non-negative integer priorities.
+ * Each bucket is a doubly linked list of the values with the same priority, so updating a priority takes O(1) time.
+ * Finding the minimum scans buckets upward from a lower bound, which is lowered whenever a priority decreases below it.
+ * When priorities only decrease, as in peeling, the total scanning cost is O(max priority + sum of decreases).
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class BucketMinHeap implements IMinHeap {
+
+    /**
+     * priority -> first value in the bucket (-1 if the bucket is empty)
+     */
+    private final int[] heads;
+
+    /**
+     * value -> next value in the same bucket (-1 if the value is the last one)
+     */
+    private final int[] next;
+
+    /**
+     * value -> previous value in the same bucket (-1 if the value is the first one)
+     */
+    private final int[] prev;
+
+    /**
+     * value -> priority
+     */
+    private final long[] priorities;
+
+    /**
+     * Number of values in the heap
+     */
+    private int size;
+
+    /**
+     * Maximum number of values in the heap
+     */
+    private final int capacity;
+
+    /**
+     * no bucket below this one is non-empty
+     */
+    private int minBucket;
+
+    /**
+     *
+     * @param capacity maximum number of values in the heap
+     * @param maxPriority maximum priority of any value (one bucket is allocated for each priority up to it)
+     */
+    public BucketMinHeap(int capacity, int maxPriority) {
+        this.capacity = capacity;
+        this.heads = new int[maxPriority + 1];
+        this.next = new int[capacity];
+        this.prev = new int[capacity];
+        this.priorities = new long[capacity];
+        this.size = 0;
+        this.minBucket = heads.length;
+        for(int i = 0; i < heads.length; i++) {
+            this.heads[i] = -1;
+        }
+    }
+
+    /**
+     * return a value with minimum priority
+     * @return (value, priority)
+     */
+    public Pair<Integer, Long> peek(){
+        int key = peekKey();
+        if(key == -1){
+            return null;
+        }
+        return new Pair<Integer, Long>(key, priorities[key]);
+    }
+
+    /**
+     * return a value with minimum priority after removing it from the heap
+     * @return (value, priority)
+     */
+    public Pair<Integer, Long> poll(){
+        Pair<Integer, Long> top = this.peek();
+        pollKey();
+        return top;
+    }
+
+    /**
+     * return a value with minimum priority without allocating a pair
+     * @return value (-1 if the heap is empty)
+     */
+    public int peekKey(){
+        if(size == 0){
+            return -1;
+        }
+        while(heads[minBucket] == -1){
+            minBucket++;
+        }
+        return heads[minBucket];
+    }
+
+    /**
+     * return the minimum priority without allocating a pair
+     * @return priority (undefined if the heap is empty)
+     */
+    public long peekPriority(){
+        return priorities[peekKey()];
+    }
+
+    /**
+     * remove a value with minimum priority from the heap without allocating a pair
+     * @return removed value (-1 if the heap is empty)
+     */
+    public int pollKey(){
+        int top = peekKey();
+        if(top != -1){
+            unlink(top);
+            size--;
+        }
+        return top;
+    }
+
+    /**
+     * update the priority of the given value to the given priority
+     * @param value value
+     * @param priority priority, which should be between 0 and the maximum priority
+     */
+    public void updatePriority(int value, long priority){
+        checkPriority(priority);
+        unlink(value);
+        priorities[value] = priority;
+        link(value);
+    }
+
+    /**
+     * return the priority of the given value
+     * @param value   value
+     * @return  priority
+     */
+    public long getPriority(int value){
+        return priorities[value];
+    }
+
+    /**
+     * insert the given value with the given priority to the heap
+     * @param value value
+     * @param priority  priority, which should be between 0 and the maximum priority
+     * @return  return false if the heap is already full return true otherwise
+     */
+    public boolean insert(int value, long priority){
+
+        if(size >= capacity)
+            return false;
+
+        checkPriority(priority);
+        size++;
+        priorities[value] = priority;
+        link(value);
+        return true;
+    }
+
+    /**
+     * insert the values 0, 1, ..., priorities.length - 1 with the given priorities to the empty heap
+     * (inserting a value takes O(1) time, so the values are inserted one by one)
+     * @param priorities value -> priority
+     * @return  return false if the heap is not empty or cannot hold all the values return true otherwise
+     */
+    public boolean insertAll(long[] priorities){
+
+        if(size != 0 || priorities.length > capacity)
+            return false;
+
+        for(int value = 0; value < priorities.length; value++) {
+            insert(value, priorities[value]);
+        }
+        return true;
+    }
+
+    private void checkPriority(long priority){
+        if(priority < 0 || priority >= heads.length)
+            throw new IllegalArgumentException("Priority " + priority + " is out of the range of the buckets (0 to " + (heads.length - 1) + ")");
+    }
+
+    private void link(int value){
+        final int bucket = (int) priorities[value];
+        final int head = heads[bucket];
+        next[value] = head;
+        prev[value] = -1;
+        if(head != -1){
+            prev[head] = value;
+        }
+        heads[bucket] = value;
+        if(bucket < minBucket){
+            minBucket = bucket;
+        }
+    }
+
+    private void unlink(int value){
+        final int before = prev[value];
+        final int after = next[value];
+        if(before != -1){
+            next[before] = after;
+        }
+        else{
+            heads[(int) priorities[value]] = after;
+        }
+        if(after != -1){
+            prev[after] = before;
+        }
+    }
+}
@@ -37,4 +37,36 @@ public class DensityMeasure {
         this.param = param;
     }
 
+    /**
+     * return the density measure with the given name
+     * @param name ari, geo, susp, or es_alpha (case insensitive)
+     * @return density measure (null if the name is unknown)
+     */
+    public static DensityMeasure fromName(String name) {
+        if(name.compareToIgnoreCase("ARI")==0)
+            return new DensityMeasure(Arithmetic);
+        else if(name.compareToIgnoreCase("GEO")==0)
+            return new DensityMeasure(Geometric);
+        else if(name.compareToIgnoreCase("SUSP")==0)
+            return new DensityMeasure(Suspiciousness);
+        else if(name.startsWith("ES_") || name.startsWith("es_"))
+            return new DensityMeasure(EntrySurplus, Double.valueOf(name.substring(3)));
+        else
+            return null;
+    }
+
+    @Override
+    public String toString() {
+        if(type == Arithmetic)
+            return "ari";
+        else if(type == Geometric)
+            return "geo";
+        else if(type == Suspiciousness)
+            return "susp";
+        else if(param == Math.rint(param))
+            return "es_" + (long) param;
+        else
+            return "es_" + param;
+    }
+
 }
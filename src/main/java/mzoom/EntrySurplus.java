@@ -70,14 +70,14 @@ public class EntrySurplus implements IDensityMeasure {
 
     public double remove(int attribute, int numValues, long sumOfMasses) {
         cardinalities[attribute] -= numValues;
-        productOfCardinalitiesOfBlock = productOfCardinalities(cardinalities); //recompute due to the precision error
+        productOfCardinalitiesOfBlock = Suspiciousness.productOfCardinalities(productOfCardinalitiesOfBlock, cardinalities, attribute, cardinalities[attribute] + numValues);
         massOfBlock -= sumOfMasses;
         return density(massOfBlock, productOfCardinalitiesOfBlock);
     }
 
     public double insert(int attribute, int numValues, long sumOfMasses) {
         cardinalities[attribute] += numValues;
-        productOfCardinalitiesOfBlock = productOfCardinalities(cardinalities); //recompute due to the precision error
+        productOfCardinalitiesOfBlock = Suspiciousness.productOfCardinalities(productOfCardinalitiesOfBlock, cardinalities, attribute, cardinalities[attribute] - numValues);
         massOfBlock += sumOfMasses;
         return density(massOfBlock, productOfCardinalitiesOfBlock);
     }
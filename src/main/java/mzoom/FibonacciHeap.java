@@ -71,9 +71,6 @@
 
 package mzoom;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * A class representing a Fibonacci heap.
  *
@@ -100,7 +97,7 @@ public class FibonacciHeap implements IMinHeap{
         private Entry mChild;  // Child node, if any.
 
         private int mElem;     // Element being stored here
-        private int mPriority; // Its priority
+        private long mPriority; // Its priority
 
         /**
          * Returns the element represented by this heap entry.
@@ -124,7 +121,7 @@ public class FibonacciHeap implements IMinHeap{
          *
          * @return The priority of this element.
          */
-        public int getPriority() {
+        public long getPriority() {
             return mPriority;
         }
 
@@ -135,7 +132,7 @@ public class FibonacciHeap implements IMinHeap{
          * @param elem The element stored in this node.
          * @param priority The priority of this element.
          */
-        private Entry(int elem, int priority) {
+        private Entry(int elem, long priority) {
             mNext = mPrev = this;
             mElem = elem;
             mPriority = priority;
@@ -154,9 +151,24 @@ public class FibonacciHeap implements IMinHeap{
     /* Maximum value */
     private int capacity;
 
+    /* Degree -> the unique root of that degree while the roots are coalesced (null otherwise) */
+    private Entry[] treeTable;
+
     public FibonacciHeap(int capacity){
         this.capacity = capacity;
         entries = new Entry[capacity];
+
+        /* A root of degree d has at least F(d+2) nodes in its tree, where F is
+         * the Fibonacci sequence, so no degree exceeds the largest d with
+         * F(d+2) <= capacity.
+         */
+        int maxDegree = 0;
+        for (long f1 = 1, f2 = 2; f2 <= capacity; maxDegree++) {
+            long f = f1 + f2;
+            f1 = f2;
+            f2 = f;
+        }
+        treeTable = new Entry[maxDegree + 1];
     }
 
     /*************************************************
@@ -167,21 +179,30 @@ public class FibonacciHeap implements IMinHeap{
      * return a value with minimum priority
      * @return (value, priority)
      */
-    public Pair<Integer, Integer> peek() {
+    public Pair<Integer, Long> peek() {
         //if (isEmpty())
         //    throw new NoSuchElementException("Heap is empty.");
 
         if (mMin == null)
             return null;
 
-        return new Pair<Integer, Integer>(mMin.getValue(), mMin.getPriority());
+        return new Pair<Integer, Long>(mMin.getValue(), mMin.getPriority());
     }
 
     /**
      * return a value with minimum priority after removing it from the heap
      * @return (value, priority)
      */
-    public Pair<Integer, Integer> poll() {
+    public Pair<Integer, Long> poll() {
+        Entry minElem = removeMin();
+        return new Pair<Integer, Long>(minElem.getValue(), minElem.getPriority());
+    }
+
+    /**
+     * remove an entry with minimum priority from the heap without allocating any object
+     * @return removed entry
+     */
+    private Entry removeMin() {
         /* Check for whether we're empty. */
         //if (isEmpty())
         //    throw new NoSuchElementException("Heap is empty.");
@@ -233,53 +254,50 @@ public class FibonacciHeap implements IMinHeap{
         mMin = mergeLists(mMin, minElem.mChild);
 
         /* If there are no entries left, we're done. */
-        if (mMin == null) return new Pair<Integer, Integer>(minElem.getValue(), minElem.getPriority());
+        if (mMin == null) return minElem;
 
         /* Next, we need to coalsce all of the roots so that there is only one
-         * tree of each degree.  To track trees of each size, we allocate an
-         * ArrayList where the entry at position i is either null or the 
-         * unique tree of degree i.
+         * tree of each degree.  To track trees of each size, we use the array
+         * treeTable, where the entry at position i is either null or the
+         * unique tree of degree i.  The array is reused across calls, so it
+         * is cleared up to the largest degree used before returning.
          */
-        List<Entry> treeTable = new ArrayList<Entry>();
+        int maxDegreeUsed = -1;
 
         /* We need to traverse the entire list, but since we're going to be
          * messing around with it we have to be careful not to break our
-         * traversal order mid-stream.  One major challenge is how to detect
-         * whether we're visiting the same node twice.  To do this, we'll
-         * spent a bit of overhead adding all of the nodes to a list, and
-         * then will visit each element of this list in order.
-         */
-        List<Entry> toVisit = new ArrayList<Entry>();
-
-        /* To add everything, we'll iterate across the elements until we
-         * find the first element twice.  We check this by looping while the
-         * list is empty or while the current element isn't the first element
-         * of that list.
+         * traversal order mid-stream.  Merging only removes the current root
+         * or an already visited root from the list, so we count the roots
+         * first, and record the next root before processing the current one.
+         * The roots are visited in the order of the list starting from mMin.
          */
-        for (Entry curr = mMin; toVisit.isEmpty() || toVisit.get(0) != curr; curr = curr.mNext)
-            toVisit.add(curr);
+        int numRoots = 0;
+        Entry curr = mMin;
+        do {
+            ++numRoots;
+            curr = curr.mNext;
+        } while (curr != mMin);
+
+        /* Traverse the roots and perform the appropriate unioning steps. */
+        Entry next = mMin;
+        for (int visited = 0; visited < numRoots; visited++) {
+            curr = next;
+            next = curr.mNext;
 
-        /* Traverse this list and perform the appropriate unioning steps. */
-        for (Entry curr: toVisit) {
             /* Keep merging until a match arises. */
             while (true) {
-                /* Ensure that the list is long enough to hold an element of this
-                 * degree.
-                 */
-                while (curr.mDegree >= treeTable.size())
-                    treeTable.add(null);
-
                 /* If nothing's here, we're can record that this tree has this size
                  * and are done processing.
                  */
-                if (treeTable.get(curr.mDegree) == null) {
-                    treeTable.set(curr.mDegree, curr);
+                if (treeTable[curr.mDegree] == null) {
+                    treeTable[curr.mDegree] = curr;
+                    if (curr.mDegree > maxDegreeUsed) maxDegreeUsed = curr.mDegree;
                     break;
                 }
 
                 /* Otherwise, merge with what's there. */
-                Entry other = treeTable.get(curr.mDegree);
-                treeTable.set(curr.mDegree, null); // Clear the slot
+                Entry other = treeTable[curr.mDegree];
+                treeTable[curr.mDegree] = null; // Clear the slot
 
                 /* Determine which of the two trees has the smaller root, storing
                  * the two tree accordingly.
@@ -318,16 +336,50 @@ public class FibonacciHeap implements IMinHeap{
              */
             if (curr.mPriority <= mMin.mPriority) mMin = curr;
         }
-        return new Pair<Integer, Integer>(minElem.getValue(), minElem.getPriority());
+
+        for (int degree = 0; degree <= maxDegreeUsed; degree++)
+            treeTable[degree] = null;
+        return minElem;
+    }
+
+    /**
+     * return a value with minimum priority without allocating a pair
+     * @return value (-1 if the heap is empty)
+     */
+    public int peekKey() {
+        return mMin == null ? -1 : mMin.getValue();
+    }
+
+    /**
+     * return the minimum priority without allocating a pair
+     * @return priority (undefined if the heap is empty)
+     */
+    public long peekPriority() {
+        return mMin.getPriority();
+    }
+
+    /**
+     * remove a value with minimum priority from the heap
+     * @return removed value (-1 if the heap is empty)
+     */
+    public int pollKey() {
+        return mMin == null ? -1 : removeMin().getValue();
     }
 
     /**
      * update the priority of the given value to the given priority
+     * (decreasing a priority takes amortized O(1) time, and increasing a priority takes amortized O(log n) time like a poll)
      * @param value value
      * @param priority priority
      */
-    public void updatePriority(int value, int priority) {
-        decreaseKeyUnchecked(entries[value], priority);
+    public void updatePriority(int value, long priority) {
+        final Entry entry = entries[value];
+        if (priority <= entry.getPriority()) {
+            decreaseKeyUnchecked(entry, priority);
+        }
+        else {
+            increaseKeyUnchecked(entry, priority);
+        }
     }
 
     /**
@@ -335,7 +387,7 @@ public class FibonacciHeap implements IMinHeap{
      * @param value   value
      * @return  priority
      */
-    public int getPriority(int value) {
+    public long getPriority(int value) {
         return entries[value].getPriority();
     }
 
@@ -345,7 +397,7 @@ public class FibonacciHeap implements IMinHeap{
      * @param priority  priority
      * @return  return false if the heap is already full return true otherwise
      */
-    public boolean insert(int value, int priority) {
+    public boolean insert(int value, long priority) {
         //checkPriority(priority);
 
         if(mSize >= capacity) {
@@ -367,6 +419,23 @@ public class FibonacciHeap implements IMinHeap{
         return true;
     }
 
+    /**
+     * insert the values 0, 1, ..., priorities.length - 1 with the given priorities to the empty heap
+     * (inserting a value takes O(1) time, so the values are inserted one by one)
+     * @param priorities value -> priority
+     * @return  return false if the heap is not empty or cannot hold all the values return true otherwise
+     */
+    public boolean insertAll(long[] priorities) {
+
+        if(mSize != 0 || priorities.length > capacity)
+            return false;
+
+        for(int value = 0; value < priorities.length; value++) {
+            insert(value, priorities[value]);
+        }
+        return true;
+    }
+
     /**
      * Deletes this Entry from the Fibonacci heap that contains it.
      *
@@ -379,7 +448,7 @@ public class FibonacciHeap implements IMinHeap{
         /* Use decreaseKey to drop the entry's key to -infinity.  This will
          * guarantee that the node is cut and set to the global minimum.
          */
-        decreaseKeyUnchecked(entry, - Integer.MAX_VALUE);
+        decreaseKeyUnchecked(entry, - Long.MAX_VALUE);
 
         /* Call dequeueMin to remove it. */
         poll();
@@ -476,7 +545,7 @@ public class FibonacciHeap implements IMinHeap{
      * @param entry The node whose key should be decreased.
      * @param priority The node's new priority.
      */
-    private void decreaseKeyUnchecked(Entry entry, int priority) {
+    private void decreaseKeyUnchecked(Entry entry, long priority) {
         /* First, change the node's priority. */
         entry.mPriority = priority;
 
@@ -496,6 +565,31 @@ public class FibonacciHeap implements IMinHeap{
             mMin = entry;
     }
 
+    /**
+     * Increases the key of a node in the tree without doing any checking to ensure
+     * that the new priority is valid.  Since the children of the node may now
+     * violate the heap order, the node is cut to the root list and removed as the
+     * minimum, which moves its children to the root list, and then it is reset to
+     * a singleton tree and merged back into the root list.  The entry is reused,
+     * so no object is allocated.
+     *
+     * @param entry The node whose key should be increased.
+     * @param priority The node's new priority.
+     */
+    private void increaseKeyUnchecked(Entry entry, long priority) {
+        decreaseKeyUnchecked(entry, - Long.MAX_VALUE);
+        removeMin();
+
+        entry.mDegree = 0;
+        entry.mIsMarked = false;
+        entry.mParent = null;
+        entry.mChild = null;
+        entry.mNext = entry.mPrev = entry;
+        entry.mPriority = priority;
+        mMin = mergeLists(mMin, entry);
+        ++mSize;
+    }
+
     /**
      * Cuts a node from its parent.  If the parent was already marked, recursively
      * cuts that node from its parent as well.
@@ -24,6 +24,9 @@ public class Geometric implements IDensityMeasure {
     private int[] cardinalities;
     private long mass;
     private double productOfCardinalities;
+    private double rootOfProduct; // productOfCardinalities^(1/dimension)
+    private double[] removalFactors; // attribute -> ((cardinality - 1) / cardinality)^(1/dimension)
+    private double[] insertionFactors; // attribute -> ((cardinality + 1) / cardinality)^(1/dimension) (NaN if not computed yet)
 
     public double initialize(int dimension, int[] cardinalities, long mass) {
         this.dimension = dimension;
@@ -33,6 +36,7 @@ public class Geometric implements IDensityMeasure {
         for(int dim = 0; dim < dimension; dim++) {
             productOfCardinalities *= cardinalities[dim];
         }
+        initializeFactors();
         return density(mass, productOfCardinalities);
     }
 
@@ -44,29 +48,57 @@ public class Geometric implements IDensityMeasure {
         for(int dim = 0; dim < dimension; dim++) {
             productOfCardinalities *= cardinaltiesOfBlock[dim];
         }
+        initializeFactors();
         return density(mass, productOfCardinalities);
     }
 
+    private void initializeFactors() {
+        removalFactors = new double[dimension];
+        insertionFactors = new double[dimension];
+        for(int dim = 0; dim < dimension; dim++) {
+            updateFactors(dim);
+        }
+        rootOfProduct = Math.pow(productOfCardinalities, 1.0/dimension);
+    }
+
+    private void updateFactors(int attribute) {
+        removalFactors[attribute] = Math.pow((cardinalities[attribute] - 1.0) / cardinalities[attribute], 1.0/dimension);
+        insertionFactors[attribute] = Double.NaN; // computed when needed, since peeling never inserts
+    }
+
     public double ifRemoved(int attribute, int numValues, long sumOfMasses) {
+        if(numValues == 1) {
+            return densityByRoot(this.mass - sumOfMasses, rootOfProduct * removalFactors[attribute]);
+        }
         return density(this.mass - sumOfMasses, productOfCardinalities / cardinalities[attribute] * (cardinalities[attribute] - numValues));
     }
 
     public double ifInserted(int attribute, int numValues, long sumOfMasses) {
+        if(numValues == 1) {
+            if(Double.isNaN(insertionFactors[attribute])) {
+                insertionFactors[attribute] = Math.pow((cardinalities[attribute] + 1.0) / cardinalities[attribute], 1.0/dimension);
+            }
+            return densityByRoot(this.mass + sumOfMasses, rootOfProduct * insertionFactors[attribute]);
+        }
         return density(this.mass + sumOfMasses, productOfCardinalities / cardinalities[attribute] * (cardinalities[attribute] + numValues));
     }
 
     public double remove(int attribute, int numValues, long sumOfMasses) {
         cardinalities[attribute] -= numValues;
-        productOfCardinalities = Suspiciousness.productOfCardinalities(cardinalities); //recompute due to the precision error
+        productOfCardinalities = Suspiciousness.productOfCardinalities(productOfCardinalities, cardinalities, attribute, cardinalities[attribute] + numValues);
+        updateFactors(attribute);
+        rootOfProduct = Math.pow(productOfCardinalities, 1.0/dimension);
         this.mass -= sumOfMasses;
-        return density(this.mass, productOfCardinalities);
+        return densityByRoot(this.mass, rootOfProduct);
     }
 
     public double insert(int attribute, int numValues, long sumOfMasses) {
         cardinalities[attribute] += numValues;
-        productOfCardinalities = Suspiciousness.productOfCardinalities(cardinalities); //recompute due to the precision error
+        productOfCardinalities = Suspiciousness.productOfCardinalities(productOfCardinalities, cardinalities, attribute, cardinalities[attribute] - numValues);
+        updateFactors(attribute);
+        rootOfProduct = Math.pow(productOfCardinalities, 1.0/dimension);
         this.mass += sumOfMasses;
-        return density(this.mass, productOfCardinalities);
+        return densityByRoot(this.mass, rootOfProduct);
     }
 
     public double density(long mass, int[] cardinalities) {
@@ -82,4 +114,13 @@ public class Geometric implements IDensityMeasure {
             return - 1;
         return mass / Math.pow(productOfCardinalities, 1.0/dimension);
     }
+
+    /**
+     * @param rootOfProduct (product of cardinalities)^(1/dimension)
+     */
+    private double densityByRoot(double mass, double rootOfProduct) {
+        if(rootOfProduct == 0)
+            return - 1;
+        return mass / rootOfProduct;
+    }
 }
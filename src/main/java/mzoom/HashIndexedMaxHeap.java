@@ -43,7 +43,12 @@ public class HashIndexedMaxHeap implements IMaxHeap {
     /**
      * index -> value
      */
-    private int[] priorities;
+    private long[] priorities;
+
+    /**
+     * Number of children of each node
+     */
+    private final int arity;
 
     /**
      * Position indicates that keys do not exist
@@ -51,9 +56,19 @@ public class HashIndexedMaxHeap implements IMaxHeap {
     private final int missingPosition = -1;
 
     public HashIndexedMaxHeap(int capacity){
+        this(capacity, 2);
+    }
+
+    /**
+     *
+     * @param capacity maximum number of values in the heap
+     * @param arity number of children of each node (2 for a binary heap)
+     */
+    public HashIndexedMaxHeap(int capacity, int arity){
         this.capacity = capacity;
+        this.arity = arity;
         this.array = new int[capacity];
-        this.priorities = new int[capacity];
+        this.priorities = new long[capacity];
         this.positions = new int[capacity];
         this.size = 0;
         for(int i = 0; i < capacity; i++) {
@@ -69,21 +84,52 @@ public class HashIndexedMaxHeap implements IMaxHeap {
         return (positions[key] == missingPosition) ? false : true;
     }
 
-    public Pair<Integer, Integer> peek(){
+    public Pair<Integer, Long> peek(){
         if(size == 0){
             return null;
         }
-        return new Pair(array[0], priorities[array[0]]);
+        return new Pair<Integer, Long>(array[0], priorities[array[0]]);
     }
 
-    public Pair<Integer, Integer> poll(){
+    public Pair<Integer, Long> poll(){
 
         if(size == 0){
             return null;
         }
 
-        Pair<Integer, Integer> top = this.peek();
-        positions[top.getKey()] = missingPosition;
+        Pair<Integer, Long> top = this.peek();
+        pollKey();
+        return top;
+    }
+
+    /**
+     * return a value with maximum priority without allocating a pair
+     * @return value (-1 if the heap is empty)
+     */
+    public int peekKey(){
+        return size == 0 ? -1 : array[0];
+    }
+
+    /**
+     * return the maximum priority without allocating a pair
+     * @return priority (undefined if the heap is empty)
+     */
+    public long peekPriority(){
+        return priorities[array[0]];
+    }
+
+    /**
+     * remove a value with maximum priority from the heap without allocating a pair
+     * @return removed value (-1 if the heap is empty)
+     */
+    public int pollKey(){
+
+        if(size == 0){
+            return -1;
+        }
+
+        int top = array[0];
+        positions[top] = missingPosition;
 
         if(size != 1){
             int last = array[size-1];
@@ -101,7 +147,7 @@ public class HashIndexedMaxHeap implements IMaxHeap {
         return top;
     }
 
-    public boolean insert(int key, int value){
+    public boolean insert(int key, long value){
 
         if(size >= capacity)
             return false;
@@ -115,11 +161,11 @@ public class HashIndexedMaxHeap implements IMaxHeap {
         return true;
     }
 
-    public int getPriority(int key){
+    public long getPriority(int key){
         return priorities[key];
     }
 
-    public void updatePriority(int key, int value){
+    public void updatePriority(int key, long value){
 
         priorities[key] = value;
         int pos = positions[key];
@@ -128,7 +174,7 @@ public class HashIndexedMaxHeap implements IMaxHeap {
         if(!shiftedDown){
             if(pos > 0){
                 int cur = key;
-                int parentPos = ((pos + 1) / 2) - 1;
+                int parentPos = parent(pos);
                 int pel = array[parentPos];
                 while(pos > 0 && priorities[pel] < priorities[cur]){
                     array[parentPos] = cur;
@@ -136,7 +182,7 @@ public class HashIndexedMaxHeap implements IMaxHeap {
                     array[pos] = pel;
                     positions[pel] = pos;
                     pos = parentPos;
-                    parentPos = ((pos + 1) / 2) - 1;
+                    parentPos = parent(pos);
                     if(pos > 0){
                         pel = array[parentPos];
                     }
@@ -146,33 +192,51 @@ public class HashIndexedMaxHeap implements IMaxHeap {
         }
     }
 
+    private int parent(int pos){
+        return arity == 2 ? ((pos + 1) / 2) - 1 : (pos - 1) / arity;
+    }
+
     private boolean maxHeapfy(int pos){
 
         boolean shiftedDown = false;
         while(true) {
 
-            int posLeft = (2 * (pos + 1)) - 1;
-            int posRight = (2 * (pos + 1));
-
             int keyCur = array[pos];
 
             int largest = pos;
             int nlargest = keyCur;
 
-            if (posLeft < size) {
-                int keyLeft = array[posLeft];
-                if (priorities[keyLeft] > priorities[keyCur]) {
-                    largest = posLeft;
-                    nlargest = keyLeft;
+            if (arity == 2) {
+                int posLeft = (2 * (pos + 1)) - 1;
+                int posRight = (2 * (pos + 1));
+
+                if (posLeft < size) {
+                    int keyLeft = array[posLeft];
+                    if (priorities[keyLeft] > priorities[keyCur]) {
+                        largest = posLeft;
+                        nlargest = keyLeft;
+                    }
                 }
 
+                if (posRight < size) {
+                    int keyRight = array[posRight];
+                    if (priorities[keyRight] > priorities[nlargest]) {
+                        largest = posRight;
+                        nlargest = keyRight;
+                    }
+                }
             }
-
-            if (posRight < size) {
-                int keyRight = array[posRight];
-                if (priorities[keyRight] > priorities[nlargest]) {
-                    largest = posRight;
-                    nlargest = keyRight;
+            else {
+                final long firstChild = (long) arity * pos + 1;
+                if (firstChild < size) {
+                    final int lastChild = (int) Math.min(firstChild + arity, size);
+                    for (int posChild = (int) firstChild; posChild < lastChild; posChild++) {
+                        int keyChild = array[posChild];
+                        if (priorities[keyChild] > priorities[nlargest]) {
+                            largest = posChild;
+                            nlargest = keyChild;
+                        }
+                    }
                 }
             }
 
@@ -16,7 +16,7 @@
 package mzoom;
 
 /**
- * Binary heap with a hash table for updating priorities
+ * Binary (or d-ary) heap with a hash table for updating priorities
  * @author Kijung Shin (kijungs@cs.cmu.edu)
  */
 public class HashIndexedMinHeap implements IMinHeap {
@@ -44,7 +44,12 @@ public class HashIndexedMinHeap implements IMinHeap {
     /**
      * value -> priority
      */
-    private int[] priorities;
+    private long[] priorities;
+
+    /**
+     * Number of children of each node
+     */
+    private final int arity;
 
     /**
      * Position indicates that keys do not exist
@@ -56,9 +61,19 @@ public class HashIndexedMinHeap implements IMinHeap {
      * @param capacity maximum number of values in the heap
      */
     public HashIndexedMinHeap(int capacity){
+        this(capacity, 2);
+    }
+
+    /**
+     *
+     * @param capacity maximum number of values in the heap
+     * @param arity number of children of each node (2 for a binary heap)
+     */
+    public HashIndexedMinHeap(int capacity, int arity){
         this.capacity = capacity;
+        this.arity = arity;
         this.array = new int[capacity];
-        this.priorities = new int[capacity];
+        this.priorities = new long[capacity];
         this.positions = new int[capacity];
         this.size = 0;
         for(int i = 0; i < capacity; i++) {
@@ -70,25 +85,56 @@ public class HashIndexedMinHeap implements IMinHeap {
      * return a value with minimum priority
      * @return (value, priority)
      */
-    public Pair<Integer, Integer> peek(){
+    public Pair<Integer, Long> peek(){
         if(size == 0){
             return null;
         }
-        return new Pair(array[0], priorities[array[0]]);
+        return new Pair<Integer, Long>(array[0], priorities[array[0]]);
     }
 
     /**
      * return a value with minimum priority after removing it from the heap
      * @return (value, priority)
      */
-    public Pair<Integer, Integer> poll(){
+    public Pair<Integer, Long> poll(){
 
         if(size == 0){
             return null;
         }
 
-        Pair<Integer, Integer> top = this.peek();
-        positions[top.getKey()] = missingPosition;
+        Pair<Integer, Long> top = this.peek();
+        pollKey();
+        return top;
+    }
+
+    /**
+     * return a value with minimum priority without allocating a pair
+     * @return value (-1 if the heap is empty)
+     */
+    public int peekKey(){
+        return size == 0 ? -1 : array[0];
+    }
+
+    /**
+     * return the minimum priority without allocating a pair
+     * @return priority (undefined if the heap is empty)
+     */
+    public long peekPriority(){
+        return priorities[array[0]];
+    }
+
+    /**
+     * remove a value with minimum priority from the heap without allocating a pair
+     * @return removed value (-1 if the heap is empty)
+     */
+    public int pollKey(){
+
+        if(size == 0){
+            return -1;
+        }
+
+        int top = array[0];
+        positions[top] = missingPosition;
 
         if(size != 1){
             int last = array[size-1];
@@ -111,7 +157,7 @@ public class HashIndexedMinHeap implements IMinHeap {
      * @param value value
      * @param priority priority
      */
-    public void updatePriority(int value, int priority){
+    public void updatePriority(int value, long priority){
 
         priorities[value] = priority;
         int pos = positions[value];
@@ -120,7 +166,7 @@ public class HashIndexedMinHeap implements IMinHeap {
         if(!shiftedDown){
             if(pos > 0){
                 int cur = value;
-                int parentPos = ((pos + 1) / 2) - 1;
+                int parentPos = parent(pos);
                 int pel = array[parentPos];
                 while(pos > 0 && priorities[pel] > priorities[cur]){
                     array[parentPos] = cur;
@@ -128,7 +174,7 @@ public class HashIndexedMinHeap implements IMinHeap {
                     array[pos] = pel;
                     positions[pel] = pos;
                     pos = parentPos;
-                    parentPos = ((pos + 1) / 2) - 1;
+                    parentPos = parent(pos);
                     if(pos > 0){
                         pel = array[parentPos];
                     }
@@ -143,7 +189,7 @@ public class HashIndexedMinHeap implements IMinHeap {
      * @param value   value
      * @return  priority
      */
-    public int getPriority(int value){
+    public long getPriority(int value){
         return priorities[value];
     }
 
@@ -153,7 +199,7 @@ public class HashIndexedMinHeap implements IMinHeap {
      * @param priority  priority
      * @return  return false if the heap is already full return true otherwise
      */
-    public boolean insert(int value, int priority){
+    public boolean insert(int value, long priority){
 
         if(size >= capacity)
             return false;
@@ -167,32 +213,73 @@ public class HashIndexedMinHeap implements IMinHeap {
         return true;
     }
 
+    /**
+     * insert the values 0, 1, ..., priorities.length - 1 with the given priorities to the empty heap
+     * (the heap is built bottom-up in O(n) time instead of inserting the values one by one)
+     * @param priorities value -> priority
+     * @return  return false if the heap is not empty or cannot hold all the values return true otherwise
+     */
+    public boolean insertAll(long[] priorities){
+
+        if(size != 0 || priorities.length > capacity)
+            return false;
+
+        size = priorities.length;
+        for(int value = 0; value < size; value++) {
+            array[value] = value;
+            positions[value] = value;
+            this.priorities[value] = priorities[value];
+        }
+        for(int pos = size > 1 ? parent(size - 1) : -1; pos >= 0; pos--) { // from the parent of the last node
+            this.minHeapfy(pos);
+        }
+        return true;
+    }
+
+    private int parent(int pos){
+        return arity == 2 ? ((pos + 1) / 2) - 1 : (pos - 1) / arity;
+    }
+
     private boolean minHeapfy(int pos){
 
         boolean shiftedDown = false;
         while(true) {
-            int posLeft = (2 * (pos + 1)) - 1;
-            int posRight = (2 * (pos + 1));
-
             int keyCur = array[pos];
 
             int smallest = pos;
             int nsmallest = keyCur;
 
-            if (posLeft < size) {
-                int keyLeft = array[posLeft];
-                if (priorities[keyLeft] < priorities[keyCur]) {
-                    smallest = posLeft;
-                    nsmallest = keyLeft;
+            if (arity == 2) {
+                int posLeft = (2 * (pos + 1)) - 1;
+                int posRight = (2 * (pos + 1));
+
+                if (posLeft < size) {
+                    int keyLeft = array[posLeft];
+                    if (priorities[keyLeft] < priorities[keyCur]) {
+                        smallest = posLeft;
+                        nsmallest = keyLeft;
+                    }
                 }
 
+                if (posRight < size) {
+                    int keyRight = array[posRight];
+                    if (priorities[keyRight] < priorities[nsmallest]) {
+                        smallest = posRight;
+                        nsmallest = keyRight;
+                    }
+                }
             }
-
-            if (posRight < size) {
-                int keyRight = array[posRight];
-                if (priorities[keyRight] < priorities[nsmallest]) {
-                    smallest = posRight;
-                    nsmallest = keyRight;
+            else {
+                final long firstChild = (long) arity * pos + 1;
+                if (firstChild < size) {
+                    final int lastChild = (int) Math.min(firstChild + arity, size);
+                    for (int posChild = (int) firstChild; posChild < lastChild; posChild++) {
+                        int keyChild = array[posChild];
+                        if (priorities[keyChild] < priorities[nsmallest]) {
+                            smallest = posChild;
+                            nsmallest = keyChild;
+                        }
+                    }
                 }
             }
 
@@ -0,0 +1,276 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+/**
+ * Types of heaps used by M-Zoom and M-Biz, and counts of the operations on the created heaps
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class HeapFactory {
+
+    public static final int Binary = 0; // HashIndexedMinHeap and HashIndexedMaxHeap
+    public static final int DAry = 1; // HashIndexedMinHeap and HashIndexedMaxHeap with the given arity
+    public static final int Fibonacci = 2; // FibonacciHeap (binary heaps are used for max heaps)
+    public static final int Bucket = 3; // BucketMinHeap if priorities are small enough (binary heaps are used otherwise and for max heaps)
+    public static final int Packed = 4; // PackedMinHeap and PackedMaxHeap with the given arity, which should be a power of two (d-ary heaps are used above their maximum capacity)
+
+    /**
+     * maximum number of buckets of a bucket queue (bucket queues are used only if the maximum priority is below this or 4 x capacity)
+     */
+    private static final int maxBuckets = 1 << 24;
+
+    public int type;
+    public int arity = 4; // number of children of each node of d-ary and packed heaps
+    public boolean countOperations = false; // whether to count the operations on the created heaps
+
+    public long inserts = 0;
+    public long decreaseKeys = 0;
+    public long increaseKeys = 0;
+    public long peeks = 0;
+    public long polls = 0;
+
+    public HeapFactory(int type) {
+        this.type = type;
+    }
+
+    public HeapFactory(int type, int arity) {
+        this.type = type;
+        this.arity = arity;
+    }
+
+    /**
+     * return the heap type with the given name
+     * @param name binary, dary, fibonacci, bucket, or packed
+     * @return heap factory (null if the name is unknown)
+     */
+    public static HeapFactory fromName(String name) {
+        if(name.equalsIgnoreCase("binary"))
+            return new HeapFactory(Binary);
+        else if(name.equalsIgnoreCase("dary"))
+            return new HeapFactory(DAry);
+        else if(name.equalsIgnoreCase("fibonacci"))
+            return new HeapFactory(Fibonacci);
+        else if(name.equalsIgnoreCase("bucket"))
+            return new HeapFactory(Bucket);
+        else if(name.equalsIgnoreCase("packed"))
+            return new HeapFactory(Packed);
+        else
+            return null;
+    }
+
+    /**
+     * create a min heap
+     * @param capacity maximum number of values in the heap
+     * @param maxPriority upper bound of the priorities, which should be non-negative (used only by bucket queues, which are replaced with binary heaps
+     *                    if any priority can be negative or if the bound needs too many buckets; pass Long.MAX_VALUE in the former case)
+     * @return created heap
+     */
+    public IMinHeap createMinHeap(int capacity, long maxPriority) {
+        IMinHeap heap;
+        if(type == DAry)
+            heap = new HashIndexedMinHeap(capacity, arity);
+        else if(type == Packed)
+            heap = capacity <= PackedMinHeap.maxCapacity ? new PackedMinHeap(capacity, arity) : new HashIndexedMinHeap(capacity, arity);
+        else if(type == Fibonacci)
+            heap = new FibonacciHeap(capacity);
+        else if(type == Bucket && maxPriority <= Math.max(maxBuckets, Math.min(Integer.MAX_VALUE - 1, 4L * capacity)))
+            heap = new BucketMinHeap(capacity, (int) maxPriority);
+        else
+            heap = new HashIndexedMinHeap(capacity);
+        return countOperations ? new CountingMinHeap(heap) : heap;
+    }
+
+    /**
+     * create a max heap
+     * @param capacity maximum number of values in the heap
+     * @return created heap
+     */
+    public IMaxHeap createMaxHeap(int capacity) {
+        IMaxHeap heap;
+        if(type == DAry)
+            heap = new HashIndexedMaxHeap(capacity, arity);
+        else if(type == Packed)
+            heap = capacity <= PackedMaxHeap.maxCapacity ? new PackedMaxHeap(capacity, arity) : new HashIndexedMaxHeap(capacity, arity);
+        else
+            heap = new HashIndexedMaxHeap(capacity);
+        return countOperations ? new CountingMaxHeap(heap) : heap;
+    }
+
+    /**
+     * @return a heap factory creating the same type of heaps, with its own operation counts
+     */
+    public HeapFactory copy() {
+        final HeapFactory copy = new HeapFactory(type, arity);
+        copy.countOperations = countOperations;
+        return copy;
+    }
+
+    /**
+     * add the operation counts of the given heap factory to those of this one
+     * @param other heap factory
+     */
+    public void addCounts(HeapFactory other) {
+        inserts += other.inserts;
+        decreaseKeys += other.decreaseKeys;
+        increaseKeys += other.increaseKeys;
+        peeks += other.peeks;
+        polls += other.polls;
+    }
+
+    /**
+     * reset the operation counts
+     */
+    public void resetCounts() {
+        inserts = 0;
+        decreaseKeys = 0;
+        increaseKeys = 0;
+        peeks = 0;
+        polls = 0;
+    }
+
+    /**
+     * @return the operation counts in a readable form
+     */
+    public String operationCounts() {
+        return "inserts: " + inserts + ", decrease-keys: " + decreaseKeys + ", increase-keys: " + increaseKeys + ", peeks: " + peeks + ", polls: " + polls;
+    }
+
+    @Override
+    public String toString() {
+        if(type == DAry)
+            return arity + "-ary";
+        else if(type == Packed)
+            return "packed " + arity + "-ary";
+        else if(type == Fibonacci)
+            return "fibonacci";
+        else if(type == Bucket)
+            return "bucket";
+        else
+            return "binary";
+    }
+
+    private synchronized void countUpdate(long oldPriority, long newPriority) { // heaps of different attributes may be updated in parallel
+        if(newPriority < oldPriority)
+            decreaseKeys++;
+        else if(newPriority > oldPriority)
+            increaseKeys++;
+    }
+
+    /**
+     * Min heap counting the operations on the given heap
+     */
+    private class CountingMinHeap implements IMinHeap {
+
+        private final IMinHeap heap;
+
+        CountingMinHeap(IMinHeap heap) {
+            this.heap = heap;
+        }
+
+        public Pair<Integer, Long> peek() {
+            peeks++;
+            return heap.peek();
+        }
+
+        public Pair<Integer, Long> poll() {
+            polls++;
+            return heap.poll();
+        }
+
+        public int peekKey() {
+            peeks++;
+            return heap.peekKey();
+        }
+
+        public long peekPriority() {
+            return heap.peekPriority();
+        }
+
+        public int pollKey() {
+            polls++;
+            return heap.pollKey();
+        }
+
+        public void updatePriority(int value, long priority) {
+            countUpdate(heap.getPriority(value), priority);
+            heap.updatePriority(value, priority);
+        }
+
+        public long getPriority(int value) {
+            return heap.getPriority(value);
+        }
+
+        public boolean insert(int value, long priority) {
+            inserts++;
+            return heap.insert(value, priority);
+        }
+
+        public boolean insertAll(long[] priorities) {
+            inserts += priorities.length;
+            return heap.insertAll(priorities);
+        }
+    }
+
+    /**
+     * Max heap counting the operations on the given heap
+     */
+    private class CountingMaxHeap implements IMaxHeap {
+
+        private final IMaxHeap heap;
+
+        CountingMaxHeap(IMaxHeap heap) {
+            this.heap = heap;
+        }
+
+        public Pair<Integer, Long> peek() {
+            peeks++;
+            return heap.peek();
+        }
+
+        public Pair<Integer, Long> poll() {
+            polls++;
+            return heap.poll();
+        }
+
+        public int peekKey() {
+            peeks++;
+            return heap.peekKey();
+        }
+
+        public long peekPriority() {
+            return heap.peekPriority();
+        }
+
+        public int pollKey() {
+            polls++;
+            return heap.pollKey();
+        }
+
+        public void updatePriority(int value, long priority) {
+            countUpdate(heap.getPriority(value), priority);
+            heap.updatePriority(value, priority);
+        }
+
+        public long getPriority(int value) {
+            return heap.getPriority(value);
+        }
+
+        public boolean insert(int value, long priority) {
+            inserts++;
+            return heap.insert(value, priority);
+        }
+    }
+}
@@ -25,27 +25,45 @@ public interface IMinHeap {
      * return a value with minimum priority
      * @return (value, priority)
      */
-    Pair<Integer, Integer> peek();
+    Pair<Integer, Long> peek();
 
     /**
      * return a value with minimum priority after removing it from the heap
      * @return (value, priority)
      */
-    Pair<Integer, Integer> poll();
+    Pair<Integer, Long> poll();
+
+    /**
+     * return a value with minimum priority without allocating a pair
+     * @return value (-1 if the heap is empty)
+     */
+    int peekKey();
+
+    /**
+     * return the minimum priority without allocating a pair
+     * @return priority (undefined if the heap is empty)
+     */
+    long peekPriority();
+
+    /**
+     * remove a value with minimum priority from the heap without allocating a pair
+     * @return removed value (-1 if the heap is empty)
+     */
+    int pollKey();
 
     /**
      * update the priority of the given value to the given priority
      * @param value value
      * @param priority priority
      */
-    void updatePriority(int value, int priority);
+    void updatePriority(int value, long priority);
 
     /**
      * return the priority of the given value
      * @param value   value
      * @return  priority
      */
-    int getPriority(int value);
+    long getPriority(int value);
 
     /**
      * insert the given value with the given priority to the heap
@@ -53,6 +71,13 @@ public interface IMinHeap {
      * @param priority  priority
      * @return  return false if the heap is already full return true otherwise
      */
-    boolean insert(int value, int priority);
+    boolean insert(int value, long priority);
+
+    /**
+     * insert the values 0, 1, ..., priorities.length - 1 with the given priorities to the empty heap
+     * @param priorities value -> priority
+     * @return  return false if the heap is not empty or cannot hold all the values return true otherwise
+     */
+    boolean insertAll(long[] priorities);
 
 }
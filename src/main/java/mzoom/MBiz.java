@@ -16,6 +16,13 @@
 package mzoom;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * M-Biz Implementation
@@ -23,12 +30,23 @@ import java.io.IOException;
  */
 public class MBiz extends MZoom {
 
+    protected int numSeeds = 1; // number of local searches, each of which starts from a different block found by M-Zoom
+
+    protected int seedThreads = 1; // number of threads running local searches
+
+    /**
+     * maximum dimension for which the xor of the attributes not in the block is stored with the count of them in a byte per tuple
+     */
+    private static final int maxPackedDimension = 15;
+
     /**
      * Main function
-     * @param args  input_path, output_path, num_of_attributes, density_measure, seed_methods, num_of_blocks, lower_bound, upper_bound
+     * @param args  input_path, output_path, num_of_attributes, density_measure, seed_methods, num_of_blocks, lower_bound, upper_bound, options
      * @throws IOException
      */
     public static void main(String[] args) throws IOException {
+        final Map<String, String> options = new HashMap<String, String>();
+        args = parseOptions(args, options);
         if(args.length < 5) {
             printError();
             System.exit(-1);
@@ -43,24 +61,15 @@ public class MBiz extends MZoom {
         final int dimension = Integer.valueOf(args[2]);
         System.out.println("dimension: " + dimension);
 
-        DensityMeasure densityMeasure = null;
-        if(args[3].compareToIgnoreCase("ARI")==0) {
-            densityMeasure = new DensityMeasure(DensityMeasure.Arithmetic);
-        }
-        else if(args[3].compareToIgnoreCase("GEO")==0){
-            densityMeasure =  new DensityMeasure(DensityMeasure.Geometric);
-        }
-        else if(args[3].compareToIgnoreCase("SUSP")==0) {
-            densityMeasure =  new DensityMeasure(DensityMeasure.Suspiciousness);
-        }
-        else if(args[3].startsWith("ES_") || args[3].startsWith("es_")) {
-            double param = Double.valueOf(args[3].replace("ES_", "").replace("es_",""));
-            densityMeasure = new DensityMeasure(DensityMeasure.EntrySurplus, param);
-        }
-        else {
-            System.err.println("Unknown Density Measure: " + args[3]);
-            printError();
-            System.exit(-1);
+        final List<DensityMeasure> densityMeasures = new ArrayList<DensityMeasure>();
+        for(String name : args[3].split(",")) {
+            DensityMeasure densityMeasure = DensityMeasure.fromName(name);
+            if(densityMeasure == null) {
+                System.err.println("Unknown Density Measure: " + name);
+                printError();
+                System.exit(-1);
+            }
+            densityMeasures.add(densityMeasure);
         }
         System.out.println("density_measure: " + args[3]);
 
@@ -78,27 +87,282 @@ public class MBiz extends MZoom {
             upper = Integer.valueOf(args[6]);
             System.out.println("upper_bound: " + upper);
         }
+
+        int importThreads = 1;
+        if(options.containsKey("import_threads")) {
+            importThreads = Integer.valueOf(options.get("import_threads"));
+            System.out.println("import_threads: " + importThreads);
+        }
+
+        boolean offHeap = false;
+        if(options.containsKey("off_heap")) {
+            offHeap = Boolean.valueOf(options.get("off_heap"));
+            System.out.println("off_heap: " + offHeap);
+        }
+
+        final HeapFactory heapFactory = parseHeapOptions(options);
+        if(heapFactory == null) {
+            printError();
+            System.exit(-1);
+        }
+
+        int peelThreads = 1;
+        if(options.containsKey("peel_threads")) {
+            peelThreads = Integer.valueOf(options.get("peel_threads"));
+            System.out.println("peel_threads: " + peelThreads);
+        }
+
+        double batchEpsilon = -1;
+        if(options.containsKey("batch_epsilon")) {
+            batchEpsilon = Double.valueOf(options.get("batch_epsilon"));
+            System.out.println("batch_epsilon: " + batchEpsilon);
+        }
+
+        boolean incrementalHeaps = false;
+        if(options.containsKey("incremental_heaps")) {
+            incrementalHeaps = Boolean.valueOf(options.get("incremental_heaps"));
+            System.out.println("incremental_heaps: " + incrementalHeaps);
+        }
+
+        int writeThreads = 1;
+        if(options.containsKey("write_threads")) {
+            writeThreads = Integer.valueOf(options.get("write_threads"));
+            System.out.println("write_threads: " + writeThreads);
+        }
+
+        int diversityThreads = 1;
+        if(options.containsKey("diversity_threads")) {
+            diversityThreads = Integer.valueOf(options.get("diversity_threads"));
+            System.out.println("diversity_threads: " + diversityThreads);
+        }
+
+        String spillDirectory = null;
+        if(options.containsKey("spill_dir")) {
+            spillDirectory = options.get("spill_dir");
+            System.out.println("spill_dir: " + spillDirectory);
+        }
+
+        long orderMemoryBudget = -1;
+        if(options.containsKey("order_memory_mb")) {
+            orderMemoryBudget = Long.valueOf(options.get("order_memory_mb")) << 20;
+            System.out.println("order_memory_mb: " + options.get("order_memory_mb"));
+        }
+
+        String partition = null;
+        if(options.containsKey("partition")) {
+            partition = options.get("partition");
+            System.out.println("partition: " + partition);
+            if(!isValidPartition(partition, dimension)) {
+                printError();
+                System.exit(-1);
+            }
+        }
+
+        int partitionThreads = 1;
+        if(options.containsKey("partition_threads")) {
+            partitionThreads = Integer.valueOf(options.get("partition_threads"));
+            System.out.println("partition_threads: " + partitionThreads);
+        }
+
+        int numSeeds = 1;
+        if(options.containsKey("seeds")) {
+            numSeeds = Integer.valueOf(options.get("seeds"));
+            System.out.println("seeds: " + numSeeds);
+        }
+
+        int seedThreads = 1;
+        if(options.containsKey("seed_threads")) {
+            seedThreads = Integer.valueOf(options.get("seed_threads"));
+            System.out.println("seed_threads: " + seedThreads);
+        }
+
+        int measureThreads = densityMeasures.size();
+        if(options.containsKey("measure_threads")) {
+            measureThreads = Integer.valueOf(options.get("measure_threads"));
+            System.out.println("measure_threads: " + measureThreads);
+        }
+
+        String binaryOutput = null;
+        if(options.containsKey("save_binary")) {
+            binaryOutput = options.get("save_binary");
+            System.out.println("save_binary: " + binaryOutput);
+        }
         System.out.println();
 
         System.out.println("importing the input tensor...");
-        Tensor tensor = TensorMethods.importTensor(input, dimension);
+        Tensor tensor = TensorMethods.importTensor(input, ",", dimension, importThreads, offHeap);
+        if(binaryOutput != null) {
+            tensor.save(binaryOutput);
+            System.out.println("the input tensor was saved in the binary format to " + binaryOutput);
+        }
         System.out.println();
         System.out.println("running M-Biz...");
         System.out.println();
-        new MBiz().run(tensor, output, blockNum, lower, upper, densityMeasure);
+        MBiz mbiz = new MBiz();
+        mbiz.setHeapFactory(heapFactory);
+        mbiz.setPeelThreads(peelThreads);
+        mbiz.setBatchEpsilon(batchEpsilon);
+        mbiz.setIncrementalHeaps(incrementalHeaps);
+        mbiz.setWriteThreads(writeThreads);
+        mbiz.setDiversityThreads(diversityThreads);
+        mbiz.setSpillDirectory(spillDirectory);
+        mbiz.setOrderMemoryBudget(orderMemoryBudget);
+        mbiz.setPartition(partition);
+        mbiz.setPartitionThreads(partitionThreads);
+        mbiz.setNumSeeds(numSeeds);
+        mbiz.setSeedThreads(seedThreads);
+        if(densityMeasures.size() == 1) {
+            mbiz.run(tensor, output, blockNum, lower, upper, densityMeasures.get(0));
+        }
+        else {
+            mbiz.run(tensor, output, blockNum, lower, upper, densityMeasures, measureThreads);
+        }
     }
 
     private static void printError() {
         System.err.println("Usage: run_mbiz.sh input_path output_path dimension density_measure num_of_blocks lower_bound upper_bound");
-        System.err.println("Density_measure should be one of [ari, geo, susp, es_alpha], where alpha should be a number greater than zero");
+        System.err.println("Density_measure should be one of [ari, geo, susp, es_alpha], where alpha should be a number greater than zero, or a comma-separated list of them (the blocks for each are written to output_path/density_measure)");
         System.err.println("Lower_bound and Upper_bound are optional");
+        System.err.println("Options (given as --name=value after the other arguments): import_threads, off_heap, save_binary, heap (binary, dary, fibonacci, bucket, or packed), heap_arity, heap_stats, peel_threads, batch_epsilon, incremental_heaps, measure_threads, write_threads, diversity_threads, spill_dir, order_memory_mb, partition (components or the index of an attribute), partition_threads, seeds, seed_threads");
         System.out.println("Upper bound should be greater than or equal to Lower_bound");
     }
 
+    /**
+     * set the number of local searches, which start from the densest blocks where the density reaches a local maximum while M-Zoom removes attribute values.
+     * the densest block among the results of the searches is returned (the block does not depend on the number of threads)
+     * @param numSeeds number of local searches
+     */
+    public void setNumSeeds(int numSeeds) {
+        this.numSeeds = numSeeds;
+    }
+
+    /**
+     * set the number of threads running local searches (each thread needs one byte per tuple and its own heaps)
+     * @param seedThreads number of threads
+     */
+    public void setSeedThreads(int seedThreads) {
+        this.seedThreads = seedThreads;
+    }
+
+    @Override
+    protected MZoom createRunner() {
+        final MBiz runner = new MBiz();
+        copySettingsTo(runner);
+        runner.setNumSeeds(numSeeds);
+        runner.setSeedThreads(seedThreads);
+        return runner;
+    }
+
     @Override
-    protected BlockInfo findOneBlock(Tensor tensor, int lower, int upper, DensityMeasure densityMeasure) throws IOException {
-        final BlockInfo blockInfo = super.findOneBlock(tensor, lower, upper, densityMeasure);
-        return findOne(tensor, lower, upper, densityMeasure, blockInfo.getBitMask(tensor.dimension, tensor.cardinalities));
+    protected BlockInfo findOneBlock(final Tensor tensor, final int lower, final int upper, final DensityMeasure densityMeasure) throws IOException {
+        final BlockInfo[] seedBlocks = super.findSeedBlocks(tensor, lower, upper, densityMeasure, numSeeds);
+        final List<long[][]> seeds = new ArrayList<long[][]>(seedBlocks.length);
+        try {
+            for(BlockInfo seedBlock : seedBlocks) {
+                seeds.add(pack(seedBlock.getBitMask(tensor.dimension, tensor.cardinalities)));
+            }
+        }
+        finally {
+            for(BlockInfo seedBlock : seedBlocks) {
+                seedBlock.clear();
+            }
+        }
+        if(seeds.size() == 1) {
+            return findOne(tensor, lower, upper, densityMeasure, seeds.get(0), heapFactory).getKey();
+        }
+
+        final List<Pair<BlockInfo, Double>> results = new ArrayList<Pair<BlockInfo, Double>>(seeds.size());
+        final HeapFactory[] heapFactories = new HeapFactory[seeds.size()];
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(seeds.size());
+        for(int seed = 0; seed < seeds.size(); seed++) {
+            results.add(null);
+            heapFactories[seed] = heapFactory.copy(); // the operation counts of each search are added after all the searches end
+            final int index = seed;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    results.set(index, findOne(tensor, lower, upper, densityMeasure, seeds.get(index), heapFactories[index]));
+                    return null;
+                }
+            });
+        }
+        final ExecutorService pool = seedThreads > 1 ? Executors.newFixedThreadPool(Math.min(seedThreads, tasks.size())) : null;
+        try {
+            TensorMethods.invokeAll(pool, tasks);
+        }
+        finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+
+        int best = 0;
+        for(int seed = 0; seed < seeds.size(); seed++) {
+            heapFactory.addCounts(heapFactories[seed]);
+            if(results.get(seed).getValue() > results.get(best).getValue()) { // the earlier seed wins ties
+                best = seed;
+            }
+        }
+        return results.get(best).getKey();
+    }
+
+    /**
+     * pack the given membership of attribute values into bits
+     * @param attributeToValueToBeIncluded (n, value) -> whether the value of the n-th attribute is in the block
+     * @return (n, value / 64) -> word whose (value % 64)-th bit is set if the value of the n-th attribute is in the block
+     */
+    private static long[][] pack(boolean[][] attributeToValueToBeIncluded) {
+        final long[][] attributeToMembership = new long[attributeToValueToBeIncluded.length][];
+        for(int attribute = 0; attribute < attributeToValueToBeIncluded.length; attribute++) {
+            final boolean[] valueToBeIncluded = attributeToValueToBeIncluded[attribute];
+            final long[] membership = new long[(valueToBeIncluded.length + 63) / 64];
+            for(int value = 0; value < valueToBeIncluded.length; value++) {
+                if(valueToBeIncluded[value]) {
+                    membership[value / 64] |= 1L << (value % 64);
+                }
+            }
+            attributeToMembership[attribute] = membership;
+        }
+        return attributeToMembership;
+    }
+
+    /**
+     * @param membership value / 64 -> word whose (value % 64)-th bit is set if the value is in the block
+     * @param value attribute value
+     * @return whether the given value is in the block
+     */
+    private static boolean isMember(long[] membership, int value) {
+        return (membership[value / 64] & 1L << (value % 64)) != 0;
+    }
+
+    /**
+     * encode the state of a tuple as a byte
+     * @param packed whether the xor is stored with the count
+     * @param nonmemberCount number of attributes whose values are not in the block
+     * @param nonmemberXor xor of the attributes whose values are not in the block (the attribute itself if the count is 1)
+     * @return count in the lower four bits and xor in the upper four bits if packed, count otherwise
+     */
+    private static byte encode(boolean packed, int nonmemberCount, int nonmemberXor) {
+        return (byte) (packed ? (nonmemberXor << 4) | nonmemberCount : nonmemberCount);
+    }
+
+    /**
+     * find the attribute other than the given one whose value in the given tuple is not in the block (used if the xor is not stored)
+     * @param tensor
+     * @param tuple tuple
+     * @param excludedAttribute attribute to skip
+     * @param attributeToMembership (n, value / 64) -> word whose (value % 64)-th bit is set if the value of the n-th attribute is in the block
+     * @return attribute
+     */
+    private static int nonmemberAttribute(Tensor tensor, long tuple, int excludedAttribute, long[][] attributeToMembership) {
+        for(int attribute = 0; attribute < tensor.dimension; attribute++) {
+            if(attribute != excludedAttribute) {
+                if(!isMember(attributeToMembership[attribute], tensor.attributeValue(attribute, tuple))) {
+                    return attribute;
+                }
+            }
+        }
+        return 0;
     }
 
     /**
@@ -107,16 +371,15 @@ public class MBiz extends MZoom {
      * @param lower
      * @param upper
      * @param densityMeasure
-     * @param attributeToValueToBeIncluded
-     * @return
+     * @param attributeToMembership (n, value / 64) -> word whose (value % 64)-th bit is set if the value of the n-th attribute is in the seed block (updated to the block found)
+     * @param heapFactory heap factory
+     * @return (block found, its density)
      */
-    private static BlockInfo findOne(Tensor tensor, int lower, int upper, DensityMeasure densityMeasure, boolean[][] attributeToValueToBeIncluded){
+    private Pair<BlockInfo, Double> findOne(Tensor tensor, int lower, int upper, DensityMeasure densityMeasure, long[][] attributeToMembership, HeapFactory heapFactory){
 
         final int dimension = tensor.dimension;
-        final int[] measureValues = tensor.measureValues; // clone measureValues
-        final byte[] nonmemberCounts = new byte[measureValues.length];
-        final int[][][] attributeToValuesToTuples = tensor.attributeToValuesToTuples;
-        final int[][] attributes = tensor.attributes;
+        final boolean packed = dimension <= maxPackedDimension;
+        final BigByteArray nonmemberCounts = new BigByteArray(tensor.omega); // tuple -> number of attributes whose values are not in the block (and their xor if packed)
 
         IDensityMeasure measure = null;
         if(densityMeasure.type == DensityMeasure.Suspiciousness)
@@ -128,38 +391,43 @@ public class MBiz extends MZoom {
         else if(densityMeasure.type == DensityMeasure.EntrySurplus)
             measure = new EntrySurplus(densityMeasure.param);
         else {
-            System.out.println("Error: Unknown Density IMeasure");
+            out.println("Error: Unknown Density IMeasure");
         }
 
-        int[][] attributeToValueToMassChange = new int[dimension][];
+        long[][] attributeToValueToMassChange = new long[dimension][];
         for(int attribute=0; attribute<dimension; attribute++){
-            attributeToValueToMassChange[attribute] = new int[tensor.cardinalities[attribute]];
+            attributeToValueToMassChange[attribute] = new long[tensor.cardinalities[attribute]];
         }
 
         long blockMass = 0;
-        for(int i=0; i<tensor.omega; i++){
-            int measureValue = measureValues[i];
-            int[] tupleAttVals = attributes[i];
+        boolean negativeMeasure = false; // whether any measure attribute value is negative
+        for(long i=0; i<tensor.omega; i++){
+            int measureValue = tensor.measureValue(i);
+            if(measureValue < 0) {
+                negativeMeasure = true;
+            }
 
-            byte nonmemberCount = 0;
+            int nonmemberCount = 0;
             int nonmemberAttribute = 0;
+            int nonmemberXor = 0;
             for(int attribute=0; attribute<dimension; attribute++){
-                if(!attributeToValueToBeIncluded[attribute][tupleAttVals[attribute]]) {
+                if(!isMember(attributeToMembership[attribute], tensor.attributeValue(attribute, i))) {
                     nonmemberCount += 1;
                     nonmemberAttribute = attribute;
+                    nonmemberXor ^= attribute;
                 }
             }
 
-            nonmemberCounts[i] = nonmemberCount;
+            nonmemberCounts.set(i, encode(packed, nonmemberCount, nonmemberXor));
 
             if(nonmemberCount==0) { // in the block
                 for(int attribute=0; attribute<dimension; attribute++){
-                    attributeToValueToMassChange[attribute][tupleAttVals[attribute]] += measureValue;
+                    attributeToValueToMassChange[attribute][tensor.attributeValue(attribute, i)] += measureValue;
                     blockMass += measureValue;
                 }
             }
             else if(nonmemberCount == 1){
-                attributeToValueToMassChange[nonmemberAttribute][tupleAttVals[nonmemberAttribute]] += measureValue;
+                attributeToValueToMassChange[nonmemberAttribute][tensor.attributeValue(nonmemberAttribute, i)] += measureValue;
             }
         }
 
@@ -169,12 +437,13 @@ public class MBiz extends MZoom {
         int sumOfCardinalities = 0;
 
         for(int attribute = 0; attribute < tensor.dimension; attribute++) {
-            boolean[] attValToBeIncluded = attributeToValueToBeIncluded[attribute];
-            int[] attValToMassChange = attributeToValueToMassChange[attribute];
-            IMinHeap inHeap = new HashIndexedMinHeap(tensor.cardinalities[attribute]);
-            IMaxHeap outHeap = new HashIndexedMaxHeap(tensor.cardinalities[attribute]);
+            long[] membership = attributeToMembership[attribute];
+            long[] attValToMassChange = attributeToValueToMassChange[attribute];
+            // the mass of each value in the block is between zero and the total mass only if no measure attribute value is negative (bucket queues are not used otherwise)
+            IMinHeap inHeap = heapFactory.createMinHeap(tensor.cardinalities[attribute], negativeMeasure ? Long.MAX_VALUE : tensor.mass);
+            IMaxHeap outHeap = heapFactory.createMaxHeap(tensor.cardinalities[attribute]);
             for(int index = 0; index < tensor.cardinalities[attribute]; index++) {
-                if(attValToBeIncluded[index]) {
+                if(isMember(membership, index)) {
                     inHeap.insert(index, attValToMassChange[index]);
                     attributeToCardinalities[attribute] += 1;
                     sumOfCardinalities ++;
@@ -199,9 +468,9 @@ public class MBiz extends MZoom {
             boolean action = false; //false: remove, true: insert
             if(sumOfCardinalities > lower) {
                 for (int attribute = 0; attribute < dimension; attribute++) {
-                    final Pair<Integer, Integer> pair = inHeaps[attribute].peek();
-                    if (pair != null) {
-                        double tempScore = measure.ifRemoved(attribute, 1, pair.getValue());
+                    final IMinHeap heap = inHeaps[attribute];
+                    if (heap.peekKey() != -1) {
+                        double tempScore = measure.ifRemoved(attribute, 1, heap.peekPriority());
                         if (tempScore > currentScore) {
                             maxAttribute = attribute;
                             action = false;
@@ -213,9 +482,9 @@ public class MBiz extends MZoom {
 
             if(sumOfCardinalities < upper) {
                 for (int attribute = 0; attribute < dimension; attribute++) {
-                    final Pair<Integer, Integer> pair = outHeaps[attribute].peek();
-                    if (pair != null) {
-                        double tempScore = measure.ifInserted(attribute, 1, pair.getValue());
+                    final IMaxHeap heap = outHeaps[attribute];
+                    if (heap.peekKey() != -1) {
+                        double tempScore = measure.ifInserted(attribute, 1, heap.peekPriority());
                         if (tempScore > currentScore) {
                             maxAttribute = attribute;
                             action = true;
@@ -231,46 +500,40 @@ public class MBiz extends MZoom {
 
             if(action == false) { //remove
 
-                Pair<Integer, Integer> pair = inHeaps[maxAttribute].poll();
-                int attValToRemove = pair.getKey();
-                currentScore = measure.remove(maxAttribute, 1, pair.getValue());
+                final long removedMass = inHeaps[maxAttribute].peekPriority();
+                int attValToRemove = inHeaps[maxAttribute].pollKey();
+                currentScore = measure.remove(maxAttribute, 1, removedMass);
 
                 sumOfCardinalities--;
                 attributeToCardinalities[maxAttribute]--;
 
                 //update degree in
-                int massSumOut = 0;
-                int[] tuples = attributeToValuesToTuples[maxAttribute][attValToRemove];
-                for (int tuple : tuples) {
+                long massSumOut = 0;
+                final long end = tensor.indexEnd(maxAttribute, attValToRemove);
+                for (long pos = tensor.indexStart(maxAttribute, attValToRemove); pos < end; pos++) {
+                    long tuple = tensor.indexedTuple(maxAttribute, pos);
 
-                    byte nonmemberCount = nonmemberCounts[tuple];
+                    final int state = nonmemberCounts.get(tuple) & 0xFF;
+                    final int nonmemberCount = packed ? state & 15 : state;
+                    final int nonmemberXor = packed ? state >>> 4 : 0;
 
                     if(nonmemberCount > 1) {
-                        nonmemberCounts[tuple]++;
+                        nonmemberCounts.set(tuple, encode(packed, nonmemberCount + 1, nonmemberXor ^ maxAttribute));
                     }
                     else if(nonmemberCount == 1){
-                        int[] tupleAttVals = attributes[tuple];
-                        int measureValue = measureValues[tuple];
-                        int nonMemberAttribute = 0;
-                        for(int attribute = 0; attribute < dimension; attribute++) {
-                            if(attribute != maxAttribute) {
-                                if(!attributeToValueToBeIncluded[attribute][tupleAttVals[attribute]]) {
-                                    nonMemberAttribute = attribute;
-                                    break;
-                                }
-                            }
-                        }
-                        nonmemberCounts[tuple]++;
-                        int attVal = tupleAttVals[nonMemberAttribute];
+                        int measureValue = tensor.measureValue(tuple);
+                        int nonMemberAttribute = packed ? nonmemberXor : nonmemberAttribute(tensor, tuple, maxAttribute, attributeToMembership);
+                        nonmemberCounts.set(tuple, encode(packed, nonmemberCount + 1, nonmemberXor ^ maxAttribute));
+                        int attVal = tensor.attributeValue(nonMemberAttribute, tuple);
                         outHeaps[nonMemberAttribute].updatePriority(attVal, outHeaps[nonMemberAttribute].getPriority(attVal) - measureValue);
                     }
                     else if(nonmemberCount==0){ //nonmember count == 0;
-                        int measureValue = measureValues[tuple];
+                        int measureValue = tensor.measureValue(tuple);
                         massSumOut += measureValue;
-                        nonmemberCounts[tuple]++;
+                        nonmemberCounts.set(tuple, encode(packed, nonmemberCount + 1, maxAttribute));
                         for (int attribute = 0; attribute < dimension; attribute++) {
                             if(attribute != maxAttribute) {
-                                int attVal = attributes[tuple][attribute];
+                                int attVal = tensor.attributeValue(attribute, tuple);
                                 inHeaps[attribute].updatePriority(attVal, inHeaps[attribute].getPriority(attVal) - measureValue);
                             }
                         }
@@ -282,64 +545,58 @@ public class MBiz extends MZoom {
                 }
 
                 outHeaps[maxAttribute].insert(attValToRemove, massSumOut);
-                attributeToValueToBeIncluded[maxAttribute][attValToRemove] = false;
+                attributeToMembership[maxAttribute][attValToRemove / 64] &= ~(1L << (attValToRemove % 64));
 
             }
             else { //insert
 
-                Pair<Integer, Integer> pair = outHeaps[maxAttribute].poll();
-                int attValToInsert = pair.getKey();
-                currentScore = measure.insert(maxAttribute, 1, pair.getValue());
+                final long insertedMass = outHeaps[maxAttribute].peekPriority();
+                int attValToInsert = outHeaps[maxAttribute].pollKey();
+                currentScore = measure.insert(maxAttribute, 1, insertedMass);
 
                 sumOfCardinalities++;
                 attributeToCardinalities[maxAttribute]++;
 
                 //update degree in
-                int massSumIn = 0;
-                int[] tuples = attributeToValuesToTuples[maxAttribute][attValToInsert];
-                for (int tuple : tuples) {
+                long massSumIn = 0;
+                final long end = tensor.indexEnd(maxAttribute, attValToInsert);
+                for (long pos = tensor.indexStart(maxAttribute, attValToInsert); pos < end; pos++) {
+                    long tuple = tensor.indexedTuple(maxAttribute, pos);
 
-                    byte nonmemberCount = nonmemberCounts[tuple];
+                    final int state = nonmemberCounts.get(tuple) & 0xFF;
+                    final int nonmemberCount = packed ? state & 15 : state;
+                    final int nonmemberXor = packed ? state >>> 4 : 0;
 
                     if(nonmemberCount > 2) {
-                        nonmemberCounts[tuple]--;
+                        nonmemberCounts.set(tuple, encode(packed, nonmemberCount - 1, nonmemberXor ^ maxAttribute));
                         continue;
                     }
                     else if(nonmemberCount == 2){
-                        int[] tupleAttVals = attributes[tuple];
-                        int measureValue = measureValues[tuple];
-                        int nonMemberAttribute = 0;
-                        for(int attribute = 0; attribute < dimension; attribute++) {
-                            if(attribute != maxAttribute) {
-                                if(!attributeToValueToBeIncluded[attribute][tupleAttVals[attribute]]) {
-                                    nonMemberAttribute = attribute;
-                                    break;
-                                }
-                            }
-                        }
-                        nonmemberCounts[tuple]--;
-                        int index = tupleAttVals[nonMemberAttribute];
+                        int measureValue = tensor.measureValue(tuple);
+                        int nonMemberAttribute = packed ? nonmemberXor ^ maxAttribute : nonmemberAttribute(tensor, tuple, maxAttribute, attributeToMembership);
+                        nonmemberCounts.set(tuple, encode(packed, nonmemberCount - 1, nonMemberAttribute));
+                        int index = tensor.attributeValue(nonMemberAttribute, tuple);
                         outHeaps[nonMemberAttribute].updatePriority(index, outHeaps[nonMemberAttribute].getPriority(index) + measureValue);
                     }
                     else if(nonmemberCount == 1){ //nonmember count == 1;
-                        int measurevALUE = measureValues[tuple];
+                        int measurevALUE = tensor.measureValue(tuple);
                         massSumIn += measurevALUE;
-                        nonmemberCounts[tuple]--;
+                        nonmemberCounts.set(tuple, encode(packed, nonmemberCount - 1, 0));
                         for (int attribute = 0; attribute < dimension; attribute++) {
                             if(attribute != maxAttribute) {
-                                int index = attributes[tuple][attribute];
+                                int index = tensor.attributeValue(attribute, tuple);
                                 inHeaps[attribute].updatePriority(index, inHeaps[attribute].getPriority(index) + measurevALUE);
                             }
                         }
                     }
                     else { //nonmemberCount
-                        System.out.println(attributeToValueToBeIncluded[maxAttribute][attributes[tuple][maxAttribute]]);
+                        System.out.println(isMember(attributeToMembership[maxAttribute], tensor.attributeValue(maxAttribute, tuple)));
                         System.out.println("error-1!");
                         System.exit(0);
                     }
                 }
                 inHeaps[maxAttribute].insert(attValToInsert, massSumIn);
-                attributeToValueToBeIncluded[maxAttribute][attValToInsert] = true;
+                attributeToMembership[maxAttribute][attValToInsert / 64] |= 1L << (attValToInsert % 64);
 
             }
 
@@ -350,9 +607,9 @@ public class MBiz extends MZoom {
         int count = 0;
 
         for (byte attribute = 0; attribute < dimension; attribute++) {
-            boolean[] attValToBeIncluded = attributeToValueToBeIncluded[attribute];
-            for(int attVal =0 ; attVal<attValToBeIncluded.length; attVal++) {
-                if(attValToBeIncluded[attVal]) {
+            long[] membership = attributeToMembership[attribute];
+            for(int attVal =0 ; attVal<tensor.cardinalities[attribute]; attVal++) {
+                if(isMember(membership, attVal)) {
                     blockAttributes[count] = attribute;
                     blockValues[count] = attVal;
                     count++;
@@ -360,7 +617,7 @@ public class MBiz extends MZoom {
             }
         }
 
-        return new BlockInfo(sumOfCardinalities, attributeToCardinalities, blockAttributes, blockValues);
+        return new Pair<BlockInfo, Double>(new BlockInfo(sumOfCardinalities, attributeToCardinalities, blockAttributes, blockValues), currentScore);
     }
 
 }
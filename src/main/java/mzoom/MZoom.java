@@ -15,11 +15,14 @@
 
 package mzoom;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * M-Zoom Implementation
@@ -27,12 +30,56 @@ import java.util.*;
  */
 public class MZoom {
 
+    protected HeapFactory heapFactory = new HeapFactory(HeapFactory.Binary); // heaps used for peeling
+
+    protected int peelThreads = 1; // number of threads updating the heaps of different attributes during peeling
+
+    protected double batchEpsilon = -1; // epsilon of batch peeling (negative if values are removed one by one)
+
+    protected int writeThreads = 1; // number of threads writing the blocks found
+
+    protected String spillDirectory = null; // directory where the order by which attribute values are removed is kept (null to keep it in memory unless it exceeds orderMemoryBudget)
+
+    protected long orderMemoryBudget = -1; // maximum number of bytes of the order kept in memory (negative if there is no limit)
+
+    protected int diversityThreads = 1; // number of threads comparing pairs of blocks for computing the diversity among them
+
+    protected boolean incrementalHeaps = false; // whether to keep the masses of attribute values across blocks and build the heaps from them in linear time
+
+    protected String partition = null; // how the tensor is split into parts searched in parallel (componentPartition, the index of an attribute, or null not to split it)
+
+    protected int partitionThreads = 1; // number of threads finding blocks in different parts of the tensor
+
+    /**
+     * value of partition for splitting the tensor into connected components
+     */
+    public static final String componentPartition = "components";
+
+    /**
+     * (n, value) -> mass of the given value of the n-th attribute in the remaining tensor (kept across blocks only if incrementalHeaps is true)
+     */
+    private long[][] attributeValueMasses = null;
+
+    protected PrintStream out = System.out; // stream to which the progress and the blocks found are reported
+
+    /**
+     * minimum number of tuples with a removed attribute value for updating the heaps in parallel
+     */
+    private static final int minParallelTuples = 4096;
+
+    /**
+     * a block is removed by visiting its tuples through the inverted index only if they are fewer than 1/indexScanRatio of all tuples (the tuples are scanned in order otherwise, which is faster per tuple)
+     */
+    private static final int indexScanRatio = 16;
+
     /**
      * Main function
-     * @param args  input_path, output_path, num_of_attributes, density_measure, num_of_blocks, lower_bound, upper_bound
+     * @param args  input_path, output_path, num_of_attributes, density_measure, num_of_blocks, lower_bound, upper_bound, options
      * @throws IOException
      */
     public static void main(String[] args) throws IOException {
+        final Map<String, String> options = new HashMap<String, String>();
+        args = parseOptions(args, options);
         if(args.length < 5) {
             printError();
             System.exit(-1);
@@ -47,24 +94,15 @@ public class MZoom {
         final int dimension = Integer.valueOf(args[2]);
         System.out.println("dimension: " + dimension);
 
-        DensityMeasure densityMeasure = null;
-        if(args[3].compareToIgnoreCase("ARI")==0) {
-            densityMeasure = new DensityMeasure(DensityMeasure.Arithmetic);
-        }
-        else if(args[3].compareToIgnoreCase("GEO")==0){
-            densityMeasure =  new DensityMeasure(DensityMeasure.Geometric);
-        }
-        else if(args[3].compareToIgnoreCase("SUSP")==0) {
-            densityMeasure =  new DensityMeasure(DensityMeasure.Suspiciousness);
-        }
-        else if(args[3].startsWith("ES_") || args[3].startsWith("es_")) {
-            double param = Double.valueOf(args[3].replace("ES_", "").replace("es_",""));
-            densityMeasure = new DensityMeasure(DensityMeasure.EntrySurplus, param);
-        }
-        else {
-            System.err.println("Unknown Density Measure:" + args[3]);
-            printError();
-            System.exit(-1);
+        final List<DensityMeasure> densityMeasures = new ArrayList<DensityMeasure>();
+        for(String name : args[3].split(",")) {
+            DensityMeasure densityMeasure = DensityMeasure.fromName(name);
+            if(densityMeasure == null) {
+                System.err.println("Unknown Density Measure: " + name);
+                printError();
+                System.exit(-1);
+            }
+            densityMeasures.add(densityMeasure);
         }
         System.out.println("density_measure: " + args[3]);
 
@@ -82,23 +120,364 @@ public class MZoom {
             upper = Integer.valueOf(args[6]);
             System.out.println("upper_bound: " + upper);
         }
+
+        int importThreads = 1;
+        if(options.containsKey("import_threads")) {
+            importThreads = Integer.valueOf(options.get("import_threads"));
+            System.out.println("import_threads: " + importThreads);
+        }
+
+        boolean offHeap = false;
+        if(options.containsKey("off_heap")) {
+            offHeap = Boolean.valueOf(options.get("off_heap"));
+            System.out.println("off_heap: " + offHeap);
+        }
+
+        final HeapFactory heapFactory = parseHeapOptions(options);
+        if(heapFactory == null) {
+            printError();
+            System.exit(-1);
+        }
+
+        int peelThreads = 1;
+        if(options.containsKey("peel_threads")) {
+            peelThreads = Integer.valueOf(options.get("peel_threads"));
+            System.out.println("peel_threads: " + peelThreads);
+        }
+
+        double batchEpsilon = -1;
+        if(options.containsKey("batch_epsilon")) {
+            batchEpsilon = Double.valueOf(options.get("batch_epsilon"));
+            System.out.println("batch_epsilon: " + batchEpsilon);
+        }
+
+        boolean incrementalHeaps = false;
+        if(options.containsKey("incremental_heaps")) {
+            incrementalHeaps = Boolean.valueOf(options.get("incremental_heaps"));
+            System.out.println("incremental_heaps: " + incrementalHeaps);
+        }
+
+        int writeThreads = 1;
+        if(options.containsKey("write_threads")) {
+            writeThreads = Integer.valueOf(options.get("write_threads"));
+            System.out.println("write_threads: " + writeThreads);
+        }
+
+        int diversityThreads = 1;
+        if(options.containsKey("diversity_threads")) {
+            diversityThreads = Integer.valueOf(options.get("diversity_threads"));
+            System.out.println("diversity_threads: " + diversityThreads);
+        }
+
+        String spillDirectory = null;
+        if(options.containsKey("spill_dir")) {
+            spillDirectory = options.get("spill_dir");
+            System.out.println("spill_dir: " + spillDirectory);
+        }
+
+        long orderMemoryBudget = -1;
+        if(options.containsKey("order_memory_mb")) {
+            orderMemoryBudget = Long.valueOf(options.get("order_memory_mb")) << 20;
+            System.out.println("order_memory_mb: " + options.get("order_memory_mb"));
+        }
+
+        String partition = null;
+        if(options.containsKey("partition")) {
+            partition = options.get("partition");
+            System.out.println("partition: " + partition);
+            if(!isValidPartition(partition, dimension)) {
+                printError();
+                System.exit(-1);
+            }
+        }
+
+        int partitionThreads = 1;
+        if(options.containsKey("partition_threads")) {
+            partitionThreads = Integer.valueOf(options.get("partition_threads"));
+            System.out.println("partition_threads: " + partitionThreads);
+        }
+
+        int measureThreads = densityMeasures.size();
+        if(options.containsKey("measure_threads")) {
+            measureThreads = Integer.valueOf(options.get("measure_threads"));
+            System.out.println("measure_threads: " + measureThreads);
+        }
+
+        String binaryOutput = null;
+        if(options.containsKey("save_binary")) {
+            binaryOutput = options.get("save_binary");
+            System.out.println("save_binary: " + binaryOutput);
+        }
         System.out.println();
 
         System.out.println("importing the input tensor...");
-        Tensor tensor = TensorMethods.importTensor(input, dimension);
+        Tensor tensor = TensorMethods.importTensor(input, ",", dimension, importThreads, offHeap);
+        if(binaryOutput != null) {
+            tensor.save(binaryOutput);
+            System.out.println("the input tensor was saved in the binary format to " + binaryOutput);
+        }
         System.out.println();
         System.out.println("running the algorithm...");
         System.out.println();
-        new MZoom().run(tensor, output, blockNum, lower, upper, densityMeasure);
+        MZoom mzoom = new MZoom();
+        mzoom.setHeapFactory(heapFactory);
+        mzoom.setPeelThreads(peelThreads);
+        mzoom.setBatchEpsilon(batchEpsilon);
+        mzoom.setIncrementalHeaps(incrementalHeaps);
+        mzoom.setWriteThreads(writeThreads);
+        mzoom.setDiversityThreads(diversityThreads);
+        mzoom.setSpillDirectory(spillDirectory);
+        mzoom.setOrderMemoryBudget(orderMemoryBudget);
+        mzoom.setPartition(partition);
+        mzoom.setPartitionThreads(partitionThreads);
+        if(densityMeasures.size() == 1) {
+            mzoom.run(tensor, output, blockNum, lower, upper, densityMeasures.get(0));
+        }
+        else {
+            mzoom.run(tensor, output, blockNum, lower, upper, densityMeasures, measureThreads);
+        }
     }
 
     private static void printError() {
         System.err.println("Usage: run_mzoom.sh input_path output_path dimension density_measure num_of_blocks lower_bound upper_bound");
-        System.err.println("Density_measure should be one of [ari, geo, susp, es_alpha], where alpha should be a number greater than zero");
+        System.err.println("Density_measure should be one of [ari, geo, susp, es_alpha], where alpha should be a number greater than zero, or a comma-separated list of them (the blocks for each are written to output_path/density_measure)");
         System.err.println("Lower_bound and Upper_bound are optional");
+        System.err.println("Options (given as --name=value after the other arguments): import_threads, off_heap, save_binary, heap (binary, dary, fibonacci, bucket, or packed), heap_arity, heap_stats, peel_threads, batch_epsilon, incremental_heaps, measure_threads, write_threads, diversity_threads, spill_dir, order_memory_mb, partition (components or the index of an attribute), partition_threads");
         System.out.println("Upper bound should be greater than or equal to Lower_bound");
     }
 
+    /**
+     * return the heap factory given by the heap, heap_arity and heap_stats options
+     * @param options options
+     * @return heap factory (null if the heap type is unknown)
+     */
+    protected static HeapFactory parseHeapOptions(Map<String, String> options) {
+        final HeapFactory heapFactory = options.containsKey("heap") ? HeapFactory.fromName(options.get("heap")) : new HeapFactory(HeapFactory.Binary);
+        if(heapFactory == null) {
+            System.err.println("Unknown Heap: " + options.get("heap"));
+            return null;
+        }
+        if(options.containsKey("heap_arity")) {
+            heapFactory.arity = Integer.valueOf(options.get("heap_arity"));
+        }
+        if(options.containsKey("heap_stats")) {
+            heapFactory.countOperations = Boolean.valueOf(options.get("heap_stats"));
+        }
+        System.out.println("heap: " + heapFactory);
+        return heapFactory;
+    }
+
+    /**
+     * check whether the given value of the partition option is either componentPartition or the index of an attribute
+     * @param partition value of the option
+     * @param dimension number of attributes
+     * @return whether the value is valid
+     */
+    protected static boolean isValidPartition(String partition, int dimension) {
+        if(!partition.equals(componentPartition)) {
+            try {
+                final int attribute = Integer.valueOf(partition);
+                if(attribute < 0 || attribute >= dimension) {
+                    System.err.println("Partition attribute out of range: " + partition);
+                    return false;
+                }
+            }
+            catch(NumberFormatException e) {
+                System.err.println("Unknown Partition: " + partition);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * split the given arguments into positional arguments and options given as --name=value
+     * @param args arguments
+     * @param options map to which options are added
+     * @return positional arguments
+     */
+    protected static String[] parseOptions(String[] args, Map<String, String> options) {
+        final List<String> positional = new ArrayList<String>();
+        for(String arg : args) {
+            if(arg.startsWith("--")) {
+                final int split = arg.indexOf('=');
+                if(split < 0) {
+                    options.put(arg.substring(2), "true");
+                }
+                else {
+                    options.put(arg.substring(2, split), arg.substring(split + 1));
+                }
+            }
+            else {
+                positional.add(arg);
+            }
+        }
+        return positional.toArray(new String[positional.size()]);
+    }
+
+    /**
+     * set the type of heaps used for peeling
+     * @param heapFactory heap factory
+     */
+    public void setHeapFactory(HeapFactory heapFactory) {
+        this.heapFactory = heapFactory;
+    }
+
+    /**
+     * set the number of threads updating the heaps during peeling (the results do not depend on it)
+     * @param peelThreads number of threads (at most dimension - 1 threads are used)
+     */
+    public void setPeelThreads(int peelThreads) {
+        this.peelThreads = peelThreads;
+    }
+
+    /**
+     * enable batch peeling, where each step chooses the attribute with the most values in the current block (as in D-Cube)
+     * and removes every value of it whose mass is at most (1 + epsilon) times the average mass of its values in the current block.
+     * for arithmetic average mass, the density of the block found is at least 1 / ((1 + epsilon) * dimension) of the maximum density
+     * if no measure attribute value is negative and no size bound is given (1 / dimension without batch peeling)
+     * @param epsilon epsilon (negative to remove values one by one)
+     */
+    public void setBatchEpsilon(double epsilon) {
+        this.batchEpsilon = epsilon;
+    }
+
+    /**
+     * keep the mass of each attribute value across blocks, subtracting the tuples of each block found, instead of recomputing them from all tuples for each block.
+     * the heaps are then built from the masses in linear time, which may break ties between attribute values with the same mass differently
+     * @param incrementalHeaps whether to reuse the masses
+     */
+    public void setIncrementalHeaps(boolean incrementalHeaps) {
+        this.incrementalHeaps = incrementalHeaps;
+    }
+
+    /**
+     * set the number of threads writing the blocks found (each thread writes different blocks)
+     * @param writeThreads number of threads
+     */
+    public void setWriteThreads(int writeThreads) {
+        this.writeThreads = writeThreads;
+    }
+
+    /**
+     * set the number of threads comparing pairs of blocks for computing the diversity among them (the result does not depend on it)
+     * @param diversityThreads number of threads
+     */
+    public void setDiversityThreads(int diversityThreads) {
+        this.diversityThreads = diversityThreads;
+    }
+
+    /**
+     * keep the order by which attribute values are removed in a file in the given directory instead of in memory,
+     * which takes 5 bytes per attribute value on disk
+     * @param spillDirectory directory (null to keep the order in memory)
+     */
+    public void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * keep the order by which attribute values are removed on disk (in the spill directory, or the default temporary directory if it is not given)
+     * whenever it takes more than the given number of bytes in memory (5 bytes per attribute value)
+     * @param orderMemoryBudget number of bytes (negative if there is no limit)
+     */
+    public void setOrderMemoryBudget(long orderMemoryBudget) {
+        this.orderMemoryBudget = orderMemoryBudget;
+    }
+
+    /**
+     * split the tensor into parts and find blocks in each part separately, which are then taken in the decreasing order of density.
+     * the parts are either the connected components of the tensor (componentPartition) or the tuples with each value of the given attribute.
+     * since no block found in a part contains any tuple in the other parts, the blocks found in different parts do not affect each other.
+     * the blocks in each part are found as if the part were the whole tensor, and they are ranked by their densities in the whole tensor
+     * @param partition componentPartition, the index of an attribute, or null not to split the tensor
+     */
+    public void setPartition(String partition) {
+        this.partition = partition;
+    }
+
+    /**
+     * set the number of threads finding blocks in different parts of the tensor (the results do not depend on it)
+     * @param partitionThreads number of threads
+     */
+    public void setPartitionThreads(int partitionThreads) {
+        this.partitionThreads = partitionThreads;
+    }
+
+    /**
+     * create an instance of this algorithm with the same settings, used for running it for each of several density measures
+     * @return created instance
+     */
+    protected MZoom createRunner() {
+        final MZoom runner = new MZoom();
+        copySettingsTo(runner);
+        return runner;
+    }
+
+    /**
+     * copy the settings of M-Zoom to the given instance
+     * @param runner instance
+     */
+    protected void copySettingsTo(MZoom runner) {
+        runner.setHeapFactory(heapFactory.copy()); // operation counts are kept separately for each instance
+        runner.setPeelThreads(peelThreads);
+        runner.setBatchEpsilon(batchEpsilon);
+        runner.setIncrementalHeaps(incrementalHeaps);
+        runner.setWriteThreads(writeThreads);
+        runner.setDiversityThreads(diversityThreads);
+        runner.setSpillDirectory(spillDirectory);
+        runner.setOrderMemoryBudget(orderMemoryBudget);
+        runner.setPartition(partition);
+        runner.setPartitionThreads(partitionThreads);
+    }
+
+    /**
+     * run the algorithm for each of the given density measures concurrently.
+     * the given tensor is shared by the runs without being modified, and the blocks found for each density measure are written to output/density_measure
+     * @param tensor tensor
+     * @param output output path
+     * @param blockNum number of blocks to find for each density measure
+     * @param lower lower size bounds
+     * @param upper upper size bounds
+     * @param densityMeasures density measures
+     * @param numThreads number of density measures processed at the same time
+     * @throws IOException
+     */
+    public void run(final Tensor tensor, final String output, final int blockNum, final int lower, final int upper, List<DensityMeasure> densityMeasures, final int numThreads) throws IOException {
+
+        final long start = System.currentTimeMillis();
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(densityMeasures.size());
+        for(final DensityMeasure densityMeasure : densityMeasures) {
+            final MZoom runner = createRunner();
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    final ByteArrayOutputStream log = new ByteArrayOutputStream();
+                    runner.out = new PrintStream(log); // buffered so that the reports of concurrent runs are not interleaved
+                    runner.run(tensor, output == null ? null : new File(output, densityMeasure.toString()).getPath(), blockNum, lower, upper, densityMeasure);
+                    runner.out.flush();
+                    synchronized (out) {
+                        out.println("density_measure: " + densityMeasure);
+                        out.println();
+                        out.print(log.toString());
+                        out.println();
+                    }
+                    return null;
+                }
+            });
+        }
+        final ExecutorService pool = numThreads > 1 ? Executors.newFixedThreadPool(Math.min(numThreads, tasks.size())) : null;
+        try {
+            TensorMethods.invokeAll(pool, tasks);
+        }
+        finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        out.println("Total running time: " + (System.currentTimeMillis() - start + 0.0)/1000 + " seconds");
+    }
+
     public void run(Tensor tensor, final int blockNum, DensityMeasure densityMeasure) throws IOException {
         run(tensor, null, blockNum, 0, Integer.MAX_VALUE, densityMeasure);
     }
@@ -120,26 +499,176 @@ public class MZoom {
         else if(densityMeasure.type == DensityMeasure.EntrySurplus)
             measure = new EntrySurplus(densityMeasure.param);
         else {
-            System.out.println("Error: Unknown Density");
+            out.println("Error: Unknown Density");
         }
         measure.initialize(tensor.dimension, tensor.cardinalities, tensor.mass);
 
-        final List<Set<Integer>[]> listOfAttributeToValues = new LinkedList();
+        heapFactory.resetCounts();
+        attributeValueMasses = incrementalHeaps ? TensorMethods.attributeValueMasses(tensor) : null;
+        if(batchEpsilon >= 0) {
+            out.println("Batch peeling: the density of each block (in arithmetic average mass) is at least 1/" + (1 + batchEpsilon) * tensor.dimension + " of the maximum density in the remaining tensor (if no measure attribute value is negative and no size bound is given)");
+        }
+        final List<BlockValues> blocks = new ArrayList<BlockValues>(blockNum);
         double bestAccuracy = 0;
-        for(int i = 0; i < blockNum; i++) {
-            BlockInfo blockInfo = findOneBlock(tensor, lower, upper, densityMeasure);
-            bestAccuracy = Math.max(bestAccuracy, removeAndEvaluateBlock((i+1), tensor, blockInfo, oriTensor, measure));
-            listOfAttributeToValues.add(blockInfo.getAttributeValues(tensor.dimension));
+        if(partition != null) {
+            bestAccuracy = findBlocksInParts(tensor, oriTensor, blockNum, lower, upper, densityMeasure, measure, blocks);
+        }
+        else {
+            for(int i = 0; i < blockNum; i++) {
+                BlockInfo blockInfo = findOneBlock(tensor, lower, upper, densityMeasure);
+                try {
+                    bestAccuracy = Math.max(bestAccuracy, removeAndEvaluateBlock((i+1), tensor, blockInfo, oriTensor, measure));
+                    blocks.add(blockInfo.getBlockValues(tensor.dimension));
+                }
+                finally {
+                    blockInfo.clear();
+                }
+            }
+        }
+        out.println("Running time: " + (System.currentTimeMillis() - start + 0.0)/1000 + " seconds");
+        if(heapFactory.countOperations) {
+            out.println("Heap operations (" + heapFactory + "): " + heapFactory.operationCounts());
         }
-        System.out.println("Running time: " + (System.currentTimeMillis() - start + 0.0)/1000 + " seconds");
 
-        double diversity = diversity(listOfAttributeToValues, tensor.dimension);
-        System.out.println("Diversity among blocks found: " + diversity);
+        double diversity = diversity(blocks, tensor.dimension, diversityThreads);
+        out.println("Diversity among blocks found: " + diversity);
 
         start = System.currentTimeMillis();
-        System.out.println("Writing outputs...");
-        writeOutput(output, oriTensor, listOfAttributeToValues);
-        System.out.println("Outputs were written. " + (System.currentTimeMillis() - start + 0.0)/1000 + " seconds was taken.");
+        out.println("Writing outputs...");
+        BlockWriter.write(output, oriTensor, blocks, writeThreads);
+        out.println("Outputs were written. " + (System.currentTimeMillis() - start + 0.0)/1000 + " seconds was taken.");
+    }
+
+    /**
+     * find blocks in each part of the tensor in parallel, and take them in the decreasing order of density among the next blocks of the parts,
+     * removing each block taken from the tensor
+     * @param tensor remaining tensor
+     * @param oriTensor original tensor
+     * @param blockNum number of blocks to find
+     * @param lower lower size bounds
+     * @param upper upper size bounds
+     * @param densityMeasure density measure
+     * @param measure density measure initialized for the tensor
+     * @param blocks list to which the blocks taken are added
+     * @return maximum density of the blocks taken
+     * @throws IOException
+     */
+    private double findBlocksInParts(final Tensor tensor, final Tensor oriTensor, final int blockNum, final int lower, final int upper, final DensityMeasure densityMeasure, final IDensityMeasure measure, final List<BlockValues> blocks) throws IOException {
+
+        final List<TensorPartition> parts = partition.equals(componentPartition) ? TensorPartition.byComponents(tensor) : TensorPartition.byAttribute(tensor, Integer.valueOf(partition));
+        final int numParts = parts.size();
+        out.println("Number of parts: " + numParts);
+        out.println();
+
+        final List<List<Pair<BlockValues, Long>>> partToBlocks = new ArrayList<List<Pair<BlockValues, Long>>>(numParts);
+        for(int part = 0; part < numParts; part++) {
+            partToBlocks.add(null);
+        }
+        final int numTasks = Math.max(1, Math.min(partitionThreads, numParts));
+        final MZoom[] runners = new MZoom[numTasks];
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numTasks);
+        for(int task = 0; task < numTasks; task++) {
+            final MZoom runner = createRunner();
+            runner.setPartition(null);
+            runner.out = new PrintStream(new ByteArrayOutputStream()); // the progress in each part is not reported
+            runners[task] = runner;
+            final int firstPart = task;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    for(int part = firstPart; part < numParts; part += numTasks) {
+                        partToBlocks.set(part, runner.findBlocksInPart(parts.get(part), blockNum, lower, upper, densityMeasure));
+                    }
+                    return null;
+                }
+            });
+        }
+        final ExecutorService pool = numTasks > 1 ? Executors.newFixedThreadPool(numTasks) : null;
+        try {
+            TensorMethods.invokeAll(pool, tasks);
+        }
+        finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        for(MZoom runner : runners) {
+            heapFactory.addCounts(runner.heapFactory);
+        }
+
+        // the blocks in each part are taken in the order they were found, and the density of the next one of each part is compared
+        final int[] partToNext = new int[numParts];
+        final double[] partToNextDensity = new double[numParts];
+        for(int part = 0; part < numParts; part++) {
+            partToNextDensity[part] = nextDensity(partToBlocks.get(part), 0, measure);
+        }
+        double bestAccuracy = 0;
+        for(int i = 0; i < blockNum; i++) {
+            int bestPart = -1;
+            for(int part = 0; part < numParts; part++) {
+                if(partToNext[part] < partToBlocks.get(part).size() && (bestPart == -1 || partToNextDensity[part] > partToNextDensity[bestPart])) {
+                    bestPart = part;
+                }
+            }
+            if(bestPart == -1) {
+                out.println("No tuple is left in any part");
+                break;
+            }
+            final BlockValues block = partToBlocks.get(bestPart).get(partToNext[bestPart]++).getKey();
+            partToNextDensity[bestPart] = nextDensity(partToBlocks.get(bestPart), partToNext[bestPart], measure);
+            bestAccuracy = Math.max(bestAccuracy, removeAndEvaluateBlock((i+1), tensor, block.getBitMask(tensor.cardinalities), cardinalities(block), oriTensor, measure));
+            blocks.add(block);
+        }
+        return bestAccuracy;
+    }
+
+    /**
+     * find blocks one by one in the given part, removing the tuples in each block from the part
+     * @param part part of the tensor
+     * @param blockNum maximum number of blocks to find
+     * @param lower lower size bounds
+     * @param upper upper size bounds
+     * @param densityMeasure density measure
+     * @return attribute values (in the whole tensor) and mass of each block, in the order they were found, until blockNum blocks are found or no tuple is left
+     * @throws IOException
+     */
+    private List<Pair<BlockValues, Long>> findBlocksInPart(final TensorPartition part, final int blockNum, final int lower, final int upper, final DensityMeasure densityMeasure) throws IOException {
+        final Tensor oriPart = part.tensor;
+        final Tensor curPart = oriPart.copy();
+        final List<Pair<BlockValues, Long>> blocks = new ArrayList<Pair<BlockValues, Long>>();
+        while(blocks.size() < blockNum && curPart.mass > 0) {
+            BlockInfo blockInfo = findOneBlock(curPart, lower, upper, densityMeasure);
+            try {
+                final long mass = removeBlock(curPart, blockInfo.getBitMask(curPart.dimension, curPart.cardinalities), oriPart);
+                blocks.add(new Pair<BlockValues, Long>(part.toGlobal(blockInfo.getBlockValues(curPart.dimension)), mass));
+            }
+            finally {
+                blockInfo.clear();
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * @return density of the given block among the blocks found in a part (-Double.MAX_VALUE if there is no such block)
+     */
+    private static double nextDensity(final List<Pair<BlockValues, Long>> blocks, final int next, final IDensityMeasure measure) {
+        if(next >= blocks.size()) {
+            return -Double.MAX_VALUE;
+        }
+        final Pair<BlockValues, Long> block = blocks.get(next);
+        return measure.density(block.getValue(), cardinalities(block.getKey()));
+    }
+
+    /**
+     * @return n -> number of values of the n-th attribute in the given block
+     */
+    private static int[] cardinalities(final BlockValues block) {
+        final int[] cardinalities = new int[block.dimension()];
+        for(int dim = 0; dim < cardinalities.length; dim++) {
+            cardinalities[dim] = block.size(dim);
+        }
+        return cardinalities;
     }
 
     /**
@@ -166,12 +695,26 @@ public class MZoom {
      * @throws IOException
      */
     protected BlockInfo findOneBlock(Tensor tensor, int lower, int upper, DensityMeasure densityMeasure) throws IOException {
+        return findSeedBlocks(tensor, lower, upper, densityMeasure, 1)[0];
+    }
+
+    /**
+     * find dense blocks from a given tensor, which are the densest blocks among those where the density reaches a local maximum while attribute values are removed.
+     * the first block is the densest one, which is the block found by findOneBlock.
+     * the blocks share the order by which attribute values are removed, so the file of the order (if any) is deleted when any of them is cleared
+     * @param tensor
+     * @param lower lower size bounds
+     * @param upper upper size bounds
+     * @param densityMeasure
+     * @param numBlocks maximum number of blocks to find
+     * @return blocks in the decreasing order of density (at least one block is returned)
+     * @throws IOException
+     */
+    protected BlockInfo[] findSeedBlocks(Tensor tensor, int lower, int upper, DensityMeasure densityMeasure, int numBlocks) throws IOException {
 
         final int dimension = tensor.dimension;
-        final int[] measureValues = tensor.measureValues.clone(); // clone values
-        final int[][][] attributeToValuesToTuples = tensor.attributeToValuesToTuples;
-        final int[][] attributes = tensor.attributes;
-        final IMinHeap[] heaps = createHeaps(tensor);
+        final Tensor remaining = tensor.copy(); // clone values
+        final IMinHeap[] heaps = attributeValueMasses != null ? createHeaps(tensor, attributeValueMasses, heapFactory, true) : createHeaps(tensor, TensorMethods.attributeValueMasses(tensor), heapFactory, false);
         final int sumOfCardinalities = sumOfCardinalities(tensor);
         IDensityMeasure measure = null;
         if(densityMeasure.type == DensityMeasure.Suspiciousness)
@@ -183,52 +726,210 @@ public class MZoom {
         else if(densityMeasure.type == DensityMeasure.EntrySurplus)
             measure = new EntrySurplus(densityMeasure.param);
         else {
-            System.out.println("Error: Unknown Density IDensityMeasure");
-        }
-
-        BlockIterInfo iterInfo = new BlockIterInfo(tensor.cardinalities);
-        int maxIters = 0;
-        double maxDensityAmongIters = measure.initialize(tensor.dimension, tensor.cardinalities, tensor.mass);
-        maxDensityAmongIters = satisfy(sumOfCardinalities, lower, upper) ? maxDensityAmongIters : -Double.MAX_VALUE;
-        for (int i = 0; i < sumOfCardinalities; i++) {
-            byte maxAttribute = 0;
-            double maxDensityAmongAttributes = -Double.MAX_VALUE;
-            for (byte attribute = 0; attribute < dimension; attribute++) {
-                final Pair<Integer, Integer> pair = heaps[attribute].peek();
-                if (pair != null) {
-                    double tempDensity = measure.ifRemoved(attribute, 1, pair.getValue());
-                    if (tempDensity > maxDensityAmongAttributes) {
-                        maxAttribute = attribute;
-                        maxDensityAmongAttributes = tempDensity;
+            out.println("Error: Unknown Density IDensityMeasure");
+        }
+
+        BlockIterInfo iterInfo = createIterInfo(tensor, sumOfCardinalities);
+        final int[] maxIters = new int[numBlocks]; // numbers of values removed before the local maxima found so far, in the decreasing order of density
+        final double[] maxDensities = new double[numBlocks];
+        Arrays.fill(maxDensities, -Double.MAX_VALUE);
+        double prevDensity = measure.initialize(tensor.dimension, tensor.cardinalities, tensor.mass);
+        prevDensity = satisfy(sumOfCardinalities, lower, upper) ? prevDensity : -Double.MAX_VALUE;
+        boolean rising = true; // whether the density increased at the previous iteration
+        int prevIters = 0;
+        final int numTasks = Math.min(peelThreads, dimension - 1);
+        final ExecutorService pool = numTasks > 1 ? Executors.newFixedThreadPool(numTasks) : null;
+        try {
+            int removed = 0; // number of attribute values removed so far
+            int steps = 0;
+            long blockMass = tensor.mass;
+            final int[] blockCardinalities = tensor.cardinalities.clone();
+            while (removed < sumOfCardinalities) {
+                byte maxAttribute = 0;
+                if (batchEpsilon >= 0) {
+                    // the attribute with the most values is chosen, where the average mass of the values is at most the arithmetic average mass of the block.
+                    // when the first value of the densest block B* is removed, its mass is at least density(B*) / dimension,
+                    // which is at most (1 + epsilon) times the density of the current block, and thus the approximation ratio holds
+                    for (byte attribute = 1; attribute < dimension; attribute++) {
+                        if (blockCardinalities[attribute] > blockCardinalities[maxAttribute]) {
+                            maxAttribute = attribute;
+                        }
                     }
                 }
-            }
-            Pair<Integer, Integer> pair = heaps[maxAttribute].poll();
-            int valueToRemove = pair.getKey();
-            double density = measure.remove(maxAttribute, 1, pair.getValue());
-            if (satisfy(sumOfCardinalities-i-1, lower, upper) && density > maxDensityAmongIters) {
-                maxDensityAmongIters = density;
-                maxIters = i + 1;
-            }
-            iterInfo.addIterInfo((byte)maxAttribute, valueToRemove);
-
-            //update degress
-            int[] entries = attributeToValuesToTuples[maxAttribute][valueToRemove];
-            for (int entry : entries) {
-                int measureValue = measureValues[entry];
-                if (measureValue > 0) {
-                    for (int dim = 0; dim < dimension; dim++) {
-                        if(dim != maxAttribute) {
-                            int attributeValue = attributes[entry][dim];
-                            heaps[dim].updatePriority(attributeValue, heaps[dim].getPriority(attributeValue) - measureValue);
+                else {
+                    double maxDensityAmongAttributes = -Double.MAX_VALUE;
+                    for (byte attribute = 0; attribute < dimension; attribute++) {
+                        final IMinHeap heap = heaps[attribute];
+                        if (heap.peekKey() != -1) {
+                            double tempDensity = measure.ifRemoved(attribute, 1, heap.peekPriority());
+                            if (tempDensity > maxDensityAmongAttributes) {
+                                maxAttribute = attribute;
+                                maxDensityAmongAttributes = tempDensity;
+                            }
                         }
                     }
                 }
-                measureValues[entry] = 0;
+
+                // values of the same attribute do not share tuples, so removing some of them does not change the masses of the others
+                final IMinHeap heap = heaps[maxAttribute];
+                final double threshold = batchEpsilon >= 0 ? (1 + batchEpsilon) * blockMass / blockCardinalities[maxAttribute] : -Double.MAX_VALUE;
+                int numRemoved = 0;
+                long removedMass = 0;
+                do {
+                    final long mass = heap.peekPriority();
+                    int valueToRemove = heap.pollKey();
+                    numRemoved++;
+                    removedMass += mass;
+                    iterInfo.addIterInfo(maxAttribute, valueToRemove);
+
+                    //update degress
+                    final long start = tensor.indexStart(maxAttribute, valueToRemove);
+                    final long end = tensor.indexEnd(maxAttribute, valueToRemove);
+                    if (pool != null && end - start >= minParallelTuples) {
+                        updateDegreesInParallel(pool, numTasks, tensor, remaining, heaps, maxAttribute, start, end);
+                    }
+                    else {
+                        for (long pos = start; pos < end; pos++) {
+                            long entry = tensor.indexedTuple(maxAttribute, pos);
+                            int measureValue = remaining.measureValue(entry);
+                            if (measureValue > 0) {
+                                for (int dim = 0; dim < dimension; dim++) {
+                                    if(dim != maxAttribute) {
+                                        int attributeValue = tensor.attributeValue(dim, entry);
+                                        heaps[dim].updatePriority(attributeValue, heaps[dim].getPriority(attributeValue) - measureValue);
+                                    }
+                                }
+                            }
+                            remaining.setMeasureValue(entry, 0);
+                        }
+                    }
+                } while (heap.peekKey() != -1 && heap.peekPriority() <= threshold);
+
+                double density = measure.remove(maxAttribute, numRemoved, removedMass);
+                removed += numRemoved;
+                blockMass -= removedMass;
+                blockCardinalities[maxAttribute] -= numRemoved;
+                steps++;
+                if (!satisfy(sumOfCardinalities - removed, lower, upper)) {
+                    density = -Double.MAX_VALUE;
+                }
+                if (rising && prevDensity >= density) {
+                    addLocalMaximum(maxDensities, maxIters, prevDensity, prevIters);
+                }
+                rising = density > prevDensity;
+                prevDensity = density;
+                prevIters = removed;
+            }
+            if (rising) {
+                addLocalMaximum(maxDensities, maxIters, prevDensity, prevIters);
+            }
+            if (batchEpsilon >= 0) {
+                out.println("Peeling steps: " + steps + " (" + removed + " attribute values were removed)");
+            }
+
+            int numFound = 1;
+            while (numFound < numBlocks && maxDensities[numFound] > -Double.MAX_VALUE) {
+                numFound++;
+            }
+            final BlockInfo[] blocks = new BlockInfo[numFound];
+            for (int i = 0; i < numFound; i++) {
+                blocks[i] = iterInfo.returnBlock(maxIters[i], null);
             }
+            return blocks;
         }
+        catch (IOException | RuntimeException e) {
+            iterInfo.clear(); // no block refers to the file of the order
+            throw e;
+        }
+        finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
 
-        return iterInfo.returnBlock(maxIters, null);
+    /**
+     * add the given local maximum of the density to the given arrays if it is denser than any of them
+     * (among local maxima with the same density, the earliest one is kept first)
+     * @param maxDensities densities of local maxima in the decreasing order
+     * @param maxIters numbers of values removed before the local maxima
+     * @param density density of the given local maximum
+     * @param iters number of values removed before the given local maximum
+     */
+    private static void addLocalMaximum(final double[] maxDensities, final int[] maxIters, final double density, final int iters) {
+        if (density == -Double.MAX_VALUE) {
+            return; // size bounds are not satisfied
+        }
+        int pos = maxDensities.length;
+        while (pos > 0 && density > maxDensities[pos - 1]) {
+            pos--;
+        }
+        if (pos == maxDensities.length) {
+            return;
+        }
+        System.arraycopy(maxDensities, pos, maxDensities, pos + 1, maxDensities.length - pos - 1);
+        System.arraycopy(maxIters, pos, maxIters, pos + 1, maxIters.length - pos - 1);
+        maxDensities[pos] = density;
+        maxIters[pos] = iters;
+    }
+
+    /**
+     * create the order by which attribute values are removed, which is kept on disk if a spill directory is given and no memory budget is given,
+     * or if the order (5 bytes per attribute value) exceeds the memory budget
+     * @param tensor tensor
+     * @param sumOfCardinalities sum of the cardinalities of the attributes of the tensor
+     * @return order
+     * @throws IOException
+     */
+    private BlockIterInfo createIterInfo(Tensor tensor, int sumOfCardinalities) throws IOException {
+        final boolean spill = orderMemoryBudget >= 0 ? (long) OrderingFile.recordSize * sumOfCardinalities > orderMemoryBudget : spillDirectory != null;
+        if(!spill) {
+            return new BlockIterInfo(tensor.cardinalities);
+        }
+        final File file = File.createTempFile("ordering", ".bin", spillDirectory == null ? null : new File(spillDirectory)); // the default temporary directory if no directory is given (deleted when the blocks are cleared)
+        return new BlockIterInfo(tensor.cardinalities, file.getPath());
+    }
+
+    /**
+     * update the heaps of the attributes other than the removed one for the tuples at the given positions of the inverted index.
+     * each task updates the heaps of different attributes in the same order as the serial loop, so the heaps end up exactly the same.
+     * @param pool thread pool
+     * @param numTasks number of tasks
+     * @param tensor tensor
+     * @param remaining tensor whose measure values are those of the tuples not removed yet
+     * @param heaps heaps for each attribute
+     * @param removedAttribute attribute of the removed value
+     * @param start start position in the inverted index of the removed attribute
+     * @param end end position in the inverted index of the removed attribute
+     * @throws IOException
+     */
+    private static void updateDegreesInParallel(final ExecutorService pool, final int numTasks, final Tensor tensor, final Tensor remaining, final IMinHeap[] heaps, final int removedAttribute, final long start, final long end) throws IOException {
+        final int dimension = tensor.dimension;
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numTasks);
+        for (int task = 0; task < numTasks; task++) {
+            final int firstIndex = task;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (long pos = start; pos < end; pos++) {
+                        long entry = tensor.indexedTuple(removedAttribute, pos);
+                        int measureValue = remaining.measureValue(entry);
+                        if (measureValue > 0) {
+                            for (int index = firstIndex; index < dimension - 1; index += numTasks) {
+                                int dim = index < removedAttribute ? index : index + 1; // skip the removed attribute
+                                int attributeValue = tensor.attributeValue(dim, entry);
+                                heaps[dim].updatePriority(attributeValue, heaps[dim].getPriority(attributeValue) - measureValue);
+                            }
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        TensorMethods.invokeAll(pool, tasks);
+        for (long pos = start; pos < end; pos++) {
+            remaining.setMeasureValue(tensor.indexedTuple(removedAttribute, pos), 0);
+        }
     }
 
     /**
@@ -247,16 +948,33 @@ public class MZoom {
     /**
      * create heaps for each attribute
      * @param tensor
+     * @param mass (n, value) -> mass of the given value of the n-th attribute
+     * @param heapFactory heap factory
+     * @param buildAll whether to build each heap at once from the masses instead of inserting the values one by one
      * @return
      */
-    private static IMinHeap[] createHeaps(final Tensor tensor) {
-        int[][] mass = TensorMethods.attributeValueMasses(tensor);
+    private static IMinHeap[] createHeaps(final Tensor tensor, final long[][] mass, final HeapFactory heapFactory, final boolean buildAll) {
+        // peeling subtracts only positive measure values, so the mass of a value whose tuples have different signs can fall below zero.
+        // the masses stay between zero and their initial maximum only if no measure attribute value is negative (bucket queues are not used otherwise)
+        boolean negativeMeasure = false;
+        for(long i = 0; i < tensor.omega && !negativeMeasure; i++) {
+            negativeMeasure = tensor.measureValue(i) < 0;
+        }
         IMinHeap[] heaps = new IMinHeap[tensor.dimension];
         for(int dim = 0; dim < tensor.dimension; dim++) {
-            IMinHeap heap = new HashIndexedMinHeap(tensor.cardinalities[dim]);
-            int[] attributeMass = mass[dim];
+            long[] attributeMass = mass[dim];
+            long maxMass = 0;
             for(int index = 0; index < tensor.cardinalities[dim]; index++) {
-                heap.insert(index, attributeMass[index]);
+                maxMass = Math.max(maxMass, attributeMass[index]);
+            }
+            IMinHeap heap = heapFactory.createMinHeap(tensor.cardinalities[dim], negativeMeasure ? Long.MAX_VALUE : maxMass);
+            if(buildAll) {
+                heap.insertAll(attributeMass);
+            }
+            else {
+                for(int index = 0; index < tensor.cardinalities[dim]; index++) {
+                    heap.insert(index, attributeMass[index]);
+                }
             }
             heaps[dim] = heap;
         }
@@ -271,43 +989,105 @@ public class MZoom {
      * @param measure
      * @return
      */
-    private static double removeAndEvaluateBlock(int blockIndex, final Tensor curTensor, final BlockInfo blockInfo, final Tensor oriTensor, final IDensityMeasure measure) throws IOException {
+    private double removeAndEvaluateBlock(int blockIndex, final Tensor curTensor, final BlockInfo blockInfo, final Tensor oriTensor, final IDensityMeasure measure) throws IOException {
+        return removeAndEvaluateBlock(blockIndex, curTensor, blockInfo.getBitMask(oriTensor.dimension, oriTensor.cardinalities), blockInfo.blockCardinalities, oriTensor, measure);
+    }
+
+    /**
+     * evaluate the density of the given block, and remove tuples in the block from the relation
+     * @param curTensor
+     * @param attributeToValuesToRemove (attribute, value) -> whether the value is in the block
+     * @param blockCardinalities n -> number of values of the n-th attribute in the block
+     * @param oriTensor
+     * @param measure
+     * @return
+     */
+    private double removeAndEvaluateBlock(int blockIndex, final Tensor curTensor, final boolean[][] attributeToValuesToRemove, final int[] blockCardinalities, final Tensor oriTensor, final IDensityMeasure measure) throws IOException {
+
+        final long mass = removeBlock(curTensor, attributeToValuesToRemove, oriTensor);
+
+        out.println("Block: " + blockIndex);
+        out.print("Volume: ");
+        for(int dim = 0; dim < curTensor.dimension; dim++) {
+            out.print(blockCardinalities[dim]);
+            if(dim < curTensor.dimension - 1) {
+                out.print(" X ");
+            }
+        }
+        out.println();
+        double density = measure.density(mass, blockCardinalities);
+        out.println("Density: " + density);
+        out.println("Mass: " + mass);
+        out.println();
+        return density;
+    }
+
+    /**
+     * remove tuples in the given block from the relation
+     * @param curTensor
+     * @param attributeToValuesToRemove (attribute, value) -> whether the value is in the block
+     * @param oriTensor
+     * @return mass of the block in the original tensor
+     */
+    private long removeBlock(final Tensor curTensor, final boolean[][] attributeToValuesToRemove, final Tensor oriTensor) {
+
+        // every tuple in the block contains a value of each attribute in the block, so it suffices to check the tuples containing the values of the attribute with the fewest such tuples
+        int scanAttribute = 0;
+        long minTuples = Long.MAX_VALUE;
+        for(int dim = 0; dim < curTensor.dimension; dim++) {
+            long tuples = 0;
+            for(int value = 0; value < curTensor.cardinalities[dim]; value++) {
+                if(attributeToValuesToRemove[dim][value]) {
+                    tuples += curTensor.indexEnd(dim, value) - curTensor.indexStart(dim, value);
+                }
+            }
+            if(tuples < minTuples) {
+                scanAttribute = dim;
+                minTuples = tuples;
+            }
+        }
 
-        final boolean[][] attributeToValuesToRemove = blockInfo.getBitMask(oriTensor.dimension, oriTensor.cardinalities);
-        final int[][] attributes = curTensor.attributes;
-        final int[] measureValues = curTensor.measureValues;
-        final int[] oriValues = oriTensor.measureValues;
         long mass = 0;
-        for(int i=0; i<curTensor.omega; i++) {
-            int[] attributeValues = attributes[i];
-            boolean removed = true;
-            for(int dim = 0; dim < curTensor.dimension; dim++) {
-                if(!attributeToValuesToRemove[dim][attributeValues[dim]]) {
-                    removed = false;
-                    break;
+        if(minTuples < curTensor.omega / indexScanRatio) {
+            for(int value = 0; value < curTensor.cardinalities[scanAttribute]; value++) {
+                if(attributeToValuesToRemove[scanAttribute][value]) {
+                    final long end = curTensor.indexEnd(scanAttribute, value);
+                    for(long pos = curTensor.indexStart(scanAttribute, value); pos < end; pos++) {
+                        mass += removeIfInBlock(curTensor.indexedTuple(scanAttribute, pos), curTensor, attributeToValuesToRemove, oriTensor);
+                    }
                 }
             }
-            if(removed) {
-                curTensor.mass -= measureValues[i];
-                measureValues[i] = 0; //remove tuple
-                mass += oriValues[i];
+        }
+        else {
+            for(long i=0; i<curTensor.omega; i++) {
+                mass += removeIfInBlock(i, curTensor, attributeToValuesToRemove, oriTensor);
             }
         }
+        return mass;
+    }
 
-        System.out.println("Block: " + blockIndex);
-        System.out.print("Volume: ");
+    /**
+     * remove the given tuple from the relation if it is in the given block
+     * @param i index of the tuple
+     * @param curTensor
+     * @param attributeToValuesToRemove (attribute, value) -> whether the value is in the block
+     * @param oriTensor
+     * @return mass of the tuple in the original tensor if it is removed, 0 otherwise
+     */
+    private long removeIfInBlock(final long i, final Tensor curTensor, final boolean[][] attributeToValuesToRemove, final Tensor oriTensor) {
         for(int dim = 0; dim < curTensor.dimension; dim++) {
-            System.out.print(blockInfo.blockCardinalities[dim]);
-            if(dim < curTensor.dimension - 1) {
-                System.out.print(" X ");
+            if(!attributeToValuesToRemove[dim][curTensor.attributeValue(dim, i)]) {
+                return 0;
             }
         }
-        System.out.println();
-        double density = measure.density(mass, blockInfo.blockCardinalities);
-        System.out.println("Density: " + density);
-        System.out.println("Mass: " + mass);
-        System.out.println();
-        return density;
+        if(attributeValueMasses != null) {
+            for(int dim = 0; dim < curTensor.dimension; dim++) {
+                attributeValueMasses[dim][curTensor.attributeValue(dim, i)] -= curTensor.measureValue(i);
+            }
+        }
+        curTensor.mass -= curTensor.measureValue(i);
+        curTensor.setMeasureValue(i, 0); //remove tuple
+        return oriTensor.measureValue(i);
     }
 
     /**
@@ -315,113 +1095,93 @@ public class MZoom {
      * @param listOfAttributeToValues (block number, attribute, value) -> list of attribute values contained in each block
      * @return diversity among blocks found
      */
-    public static double diversity(List<Set<Integer>[]> listOfAttributeToValues, int dimension) {
+    public static double diversity(List<Set<Integer>[]> listOfAttributeToValues, int dimension) throws IOException {
+        final List<BlockValues> blocks = new ArrayList<BlockValues>(listOfAttributeToValues.size());
+        for(Set<Integer>[] attributeToValues : listOfAttributeToValues) {
+            blocks.add(BlockValues.of(attributeToValues, dimension));
+        }
+        return diversity(blocks, dimension, 1);
+    }
 
-        int blockNum = listOfAttributeToValues.size();
-        int count = 0;
-        double jaccardSum = 0;
-        for(int i=0; i<blockNum; i++) {
-            for(int j=i+1; j<blockNum; j++) {
-                long intersect = 0;
-                long union = 0;
-                for(int dim = 0; dim < dimension; dim++) {
-                    Map<Integer, Integer> map = new HashMap();
-                    for(int index : listOfAttributeToValues.get(i)[dim]) {
-                        if(map.containsKey(index)){
-                            map.put(index, map.get(index)+1);
-                        }
-                        else {
-                            map.put(index, 1);
-                        }
-                    }
-                    for(int index : listOfAttributeToValues.get(j)[dim]) {
-                        if(map.containsKey(index)){
-                            map.put(index, map.get(index)+1);
-                        }
-                        else {
-                            map.put(index, 1);
-                        }
-                    }
-                    union += map.size();
-                    for(int vals : map.values()){
-                        if(vals == 2) {
-                            intersect++;
-                        }
-                        else if(vals > 2) {
-                            System.out.println("ERROR!!");
+    /**
+     * compute the diversity among blocks found, comparing different pairs of blocks in parallel
+     * @param blocks attribute values contained in each block
+     * @param numThreads number of threads
+     * @return diversity among blocks found
+     * @throws IOException
+     */
+    public static double diversity(final List<BlockValues> blocks, final int dimension, final int numThreads) throws IOException {
+
+        final int blockNum = blocks.size();
+        final double[] jaccards = new double[blockNum * (blockNum - 1) / 2]; // jaccard similarity of each pair (i, j) in the order of i and then j
+        final int numTasks = Math.max(1, Math.min(numThreads, blockNum));
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numTasks);
+        for(int task = 0; task < numTasks; task++) {
+            final int firstBlock = task;
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for(int i = firstBlock; i < blockNum; i += numTasks) {
+                        int pair = i * (2 * blockNum - i - 1) / 2; // number of pairs with a smaller first block
+                        for(int j = i + 1; j < blockNum; j++) {
+                            long intersect = 0;
+                            long union = 0;
+                            for(int dim = 0; dim < dimension; dim++) {
+                                final int[] values1 = blocks.get(i).values(dim);
+                                final int[] values2 = blocks.get(j).values(dim);
+                                final long common = intersectionSize(values1, values2);
+                                intersect += common;
+                                union += values1.length + values2.length - common;
+                            }
+                            jaccards[pair++] = (0.0+intersect) / union;
                         }
                     }
+                    return null;
                 }
-
-                double jaccard = (0.0+intersect) / union;
-                jaccardSum += jaccard;
-                count++;
+            });
+        }
+        final ExecutorService pool = numTasks > 1 ? Executors.newFixedThreadPool(numTasks) : null;
+        try {
+            TensorMethods.invokeAll(pool, tasks);
+        }
+        finally {
+            if (pool != null) {
+                pool.shutdown();
             }
         }
 
-        return (1 - jaccardSum/count);
+        double jaccardSum = 0;
+        for(double jaccard : jaccards) { // summed in the same order regardless of the number of threads
+            jaccardSum += jaccard;
+        }
+        return (1 - jaccardSum/jaccards.length);
     }
 
-
     /**
-     * write blocks found to the given output folder
-     * @param output    output path
-     * @param tensor    tensor
-     * @param listOfAttributeToValues   blocks found
-     * @throws IOException
+     * @param values1 sorted array without duplicates
+     * @param values2 sorted array without duplicates
+     * @return number of values in both arrays
      */
-    private static void writeOutput(String output, Tensor tensor, List<Set<Integer>[]> listOfAttributeToValues) throws IOException {
-        File dir = new File(output);
-        try{
-            dir.mkdir();
-        }
-        catch(Exception e){
-        }
-
-        int blockNum = listOfAttributeToValues.size();
-        int dimension = tensor.dimension;
-        String[][] intToStrValue = tensor.intToStrValue;
-        for(int blockIndex = 0; blockIndex < blockNum; blockIndex++) {
-
-            Set<Integer>[] attributeToValues = listOfAttributeToValues.get(blockIndex);
-
-            //write attribute values
-            BufferedWriter bw = new BufferedWriter(new FileWriter(output + File.separator + "block_"+(blockIndex+1)+".attributes"));
-            final boolean[][] attributeToValuesToWrite = new boolean[tensor.dimension][];
-            for(int dim = 0; dim < tensor.dimension; dim++) {
-                attributeToValuesToWrite[dim] = new boolean[tensor.cardinalities[dim]];
-                for(int value : attributeToValues[dim]) {
-                    attributeToValuesToWrite[dim][value] = true;
-                    bw.write(dim+","+intToStrValue[dim][value]);
-                    bw.newLine();
-                }
+    private static long intersectionSize(final int[] values1, final int[] values2) {
+        long count = 0;
+        int index1 = 0;
+        int index2 = 0;
+        while(index1 < values1.length && index2 < values2.length) {
+            final int value1 = values1[index1];
+            final int value2 = values2[index2];
+            if(value1 < value2) {
+                index1++;
             }
-            bw.close();
-
-            //write blocks
-            bw = new BufferedWriter(new FileWriter(output + File.separator + "block_"+(blockIndex+1)+".tuples"));
-            final int[][] attributes = tensor.attributes;
-            final int[] measureValues = tensor.measureValues;
-            for(int i=0; i<tensor.omega; i++) {
-                int[] attributeValues = attributes[i];
-                boolean write = true;
-                for(int dim = 0; dim < dimension; dim++) {
-                    if(!attributeToValuesToWrite[dim][attributeValues[dim]]) {
-                        write = false;
-                        break;
-                    }
-                }
-                if(write) {
-                    for(int dim = 0; dim < dimension; dim++) {
-                        bw.write(intToStrValue[dim][attributeValues[dim]] + ",");
-                    }
-                    bw.write(""+measureValues[i]);
-                    bw.newLine();
-                }
+            else if(value1 > value2) {
+                index2++;
+            }
+            else {
+                count++;
+                index1++;
+                index2++;
             }
-            bw.close();
         }
-
+        return count;
     }
 
 }
@@ -0,0 +1,607 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Single-pass tensor loader which maps the input file in memory and tokenizes bytes in place.
+ * It also converts input files to the binary format in two passes without storing the tuples in memory.
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class MappedTensorLoader {
+
+    /**
+     * maximum number of bytes mapped at once
+     */
+    private static final int windowSize = 1 << 30;
+
+    private final int dimension;
+    private final byte delim;
+    private final Dictionary[] dictionaries; // n -> dictionary of the n-th attribute
+    private final GrowableIntArray[] columns; // (n, i) -> the n-th attribute value of the i-th tuple (null when converting)
+    private final GrowableIntArray measureValues = new GrowableIntArray(); // i -> measure attribute value of i-th tuple
+    private final GrowableLongArray[] valueCounts; // (n, value) -> number of tuples with the value for the n-th attribute (only when converting)
+    private BinaryTensorFormat.TupleWriter writer = null; // writer of the parsed tuples (only in the second pass of converting)
+    private final int[] values; // n -> the n-th attribute value of the current tuple
+    private final int[] tokenStarts; // token -> start of the token in the current line
+    private final int[] tokenEnds; // token -> end of the token in the current line
+    private long omega = 0;
+    private long mass = 0;
+
+    /**
+     * @param dimension number of attributes
+     * @param delim delimiter
+     * @param converting whether tuples are counted and written to a file instead of being stored in memory
+     */
+    private MappedTensorLoader(final int dimension, final byte delim, final boolean converting) {
+        this.dimension = dimension;
+        this.delim = delim;
+        this.dictionaries = new Dictionary[dimension];
+        this.columns = converting ? null : new GrowableIntArray[dimension];
+        this.valueCounts = converting ? new GrowableLongArray[dimension] : null;
+        this.values = new int[dimension];
+        this.tokenStarts = new int[dimension + 1];
+        this.tokenEnds = new int[dimension + 1];
+        for(int dim = 0; dim < dimension; dim++) {
+            dictionaries[dim] = new Dictionary();
+            if(converting) {
+                valueCounts[dim] = new GrowableLongArray();
+            }
+            else {
+                columns[dim] = new GrowableIntArray();
+            }
+        }
+    }
+
+    /**
+     * check whether the given delimiter can be handled by this loader, i.e., whether String.split would treat it as a single literal byte
+     * @param delim delimiter used in the file
+     * @return true if the delimiter is supported
+     */
+    public static boolean supports(final String delim) {
+        return delim.length() == 1 && delim.charAt(0) < 128 && ".$|()[{^?*+\\".indexOf(delim.charAt(0)) < 0;
+    }
+
+    /**
+     * load an input tensor in memory, reading the file only once
+     * @param path  path of the input tensor file
+     * @param delim delimiter used in the file (a single ascii character)
+     * @param dimension number of attributes
+     * @return  imported tensor
+     * @throws IOException
+     */
+    public static Tensor load(final String path, final String delim, final int dimension) throws IOException {
+        return load(path, delim, dimension, 1);
+    }
+
+    /**
+     * load an input tensor in memory, parsing disjoint byte ranges of the file in parallel.
+     * Each range is parsed with its own dictionaries, which are merged in the order of the ranges,
+     * so the imported tensor (including the integers mapped to attribute values) does not depend on the number of threads.
+     * @param path  path of the input tensor file
+     * @param delim delimiter used in the file (a single ascii character)
+     * @param dimension number of attributes
+     * @param numThreads number of threads
+     * @return  imported tensor
+     * @throws IOException
+     */
+    public static Tensor load(final String path, final String delim, final int dimension, final int numThreads) throws IOException {
+        if(!supports(delim)) {
+            throw new IllegalArgumentException("Unsupported delimiter: " + delim);
+        }
+        final RandomAccessFile file = new RandomAccessFile(path, "r");
+        final ExecutorService pool = numThreads > 1 ? Executors.newFixedThreadPool(numThreads) : null;
+        try {
+            final FileChannel channel = file.getChannel();
+            final long[] boundaries = splitAtLines(channel, numThreads);
+            final MappedTensorLoader[] chunks = new MappedTensorLoader[boundaries.length - 1];
+            final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for(int chunk = 0; chunk < chunks.length; chunk++) {
+                final MappedTensorLoader loader = new MappedTensorLoader(dimension, (byte) delim.charAt(0), false);
+                final long start = boundaries[chunk];
+                final long end = boundaries[chunk + 1];
+                chunks[chunk] = loader;
+                tasks.add(new Callable<Void>() {
+                    public Void call() throws IOException {
+                        loader.parse(channel, start, end);
+                        return null;
+                    }
+                });
+            }
+            TensorMethods.invokeAll(pool, tasks);
+            return merge(chunks, pool);
+        }
+        finally {
+            if(pool != null) {
+                pool.shutdown();
+            }
+            file.close();
+        }
+    }
+
+    /**
+     * convert an input tensor to the binary format without storing its tuples in memory, which works for tensors with more tuples than a Java array.
+     * The first pass builds the dictionaries and counts the tuples with each attribute value,
+     * and the second pass writes the tuples to their positions in the memory-mapped output file.
+     * The output file is the same as the one written by Tensor.save after loading the input tensor in memory (if tuple ids are stored as ints).
+     * @param path  path of the input tensor file
+     * @param delim delimiter used in the file (a single ascii character)
+     * @param dimension number of attributes
+     * @param binaryPath path of the output file
+     * @param longTupleIds whether to store tuple ids as longs even if the number of tuples is within the range of int
+     * @throws IOException
+     */
+    public static void convert(final String path, final String delim, final int dimension, final String binaryPath, final boolean longTupleIds) throws IOException {
+        if(!supports(delim)) {
+            throw new IllegalArgumentException("Unsupported delimiter: " + delim);
+        }
+        final RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            final FileChannel channel = file.getChannel();
+            final long fileSize = channel.size();
+            final MappedTensorLoader loader = new MappedTensorLoader(dimension, (byte) delim.charAt(0), true);
+            loader.parse(channel, 0, fileSize);
+
+            final int[] cardinalities = new int[dimension];
+            final String[][] intToStrValue = new String[dimension][];
+            final long[][] valueCounts = new long[dimension][];
+            for(int dim = 0; dim < dimension; dim++) {
+                cardinalities[dim] = loader.dictionaries[dim].size();
+                intToStrValue[dim] = loader.dictionaries[dim].toStrings(Charset.defaultCharset());
+                valueCounts[dim] = loader.valueCounts[dim].array;
+            }
+            final long omega = loader.omega;
+            loader.writer = new BinaryTensorFormat.TupleWriter(binaryPath, dimension, omega, loader.mass, cardinalities, intToStrValue, valueCounts, longTupleIds || omega > Integer.MAX_VALUE);
+            try {
+                loader.omega = 0;
+                loader.parse(channel, 0, fileSize);
+                if(loader.omega != omega) {
+                    throw new IOException(path + " was modified while being converted");
+                }
+            }
+            finally {
+                loader.writer.close();
+            }
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    /**
+     * split the given file into byte ranges of similar sizes starting at the beginnings of lines
+     * @param channel input file
+     * @param numRanges number of ranges
+     * @return boundaries of the ranges (the i-th range is from the i-th boundary to the (i+1)-th boundary)
+     * @throws IOException
+     */
+    private static long[] splitAtLines(final FileChannel channel, final int numRanges) throws IOException {
+        final long fileSize = channel.size();
+        final long[] boundaries = new long[numRanges + 1];
+        final ByteBuffer buffer = ByteBuffer.allocate(8192);
+        boundaries[numRanges] = fileSize;
+        for(int range = 1; range < numRanges; range++) {
+            long position = Math.max(boundaries[range - 1], fileSize / numRanges * range);
+            if(position > 0 && position < fileSize) { // move to the beginning of the next line
+                position--;
+                boolean found = false;
+                while(!found && position < fileSize) {
+                    buffer.clear();
+                    final int read = channel.read(buffer, position);
+                    for(int i = 0; i < read; i++) {
+                        if(buffer.get(i) == '\n') {
+                            position += i + 1;
+                            found = true;
+                            break;
+                        }
+                    }
+                    if(!found) {
+                        position += read;
+                    }
+                }
+            }
+            boundaries[range] = position;
+        }
+        return boundaries;
+    }
+
+    /**
+     * parse the lines in the given byte range of the input file
+     * @param channel input file
+     * @param start start of the range, which should be the beginning of a line
+     * @param end end of the range, which should be the end of the file or the beginning of a line
+     * @throws IOException
+     */
+    private void parse(final FileChannel channel, final long start, final long end) throws IOException {
+        long position = start;
+        while(position < end) {
+            final int length = (int) Math.min(windowSize, end - position);
+            final boolean last = position + length == end;
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            final int consumed = parse(buffer, length, last);
+            if(consumed == 0) {
+                throw new IOException("A line longer than " + windowSize + " bytes was found at byte " + position);
+            }
+            position += consumed;
+        }
+    }
+
+    /**
+     * parse the complete lines in the given buffer
+     * @param buffer mapped region of the input file
+     * @param length number of bytes in the buffer
+     * @param last whether the buffer ends at the end of the file
+     * @return number of bytes consumed
+     */
+    private int parse(final ByteBuffer buffer, final int length, final boolean last) {
+        int lineStart = 0;
+        while(lineStart < length) {
+            int lineEnd = lineStart;
+            while(lineEnd < length && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            if(lineEnd == length && !last) {
+                break; // incomplete line, parsed with the next window
+            }
+            int contentEnd = lineEnd;
+            if(contentEnd > lineStart && buffer.get(contentEnd - 1) == '\r') {
+                contentEnd--;
+            }
+            parseLine(buffer, lineStart, contentEnd);
+            lineStart = lineEnd + 1;
+        }
+        return Math.min(lineStart, length);
+    }
+
+    /**
+     * parse a line and append the tuple in it
+     * @param buffer mapped region of the input file
+     * @param start start of the line (inclusive)
+     * @param end end of the line (exclusive)
+     */
+    private void parseLine(final ByteBuffer buffer, final int start, final int end) {
+        int pos = start;
+        for(int token = 0; token <= dimension; token++) {
+            if(pos > end) {
+                skip(buffer, start, end);
+                return;
+            }
+            tokenStarts[token] = pos;
+            while(pos < end && buffer.get(pos) != delim) {
+                pos++;
+            }
+            tokenEnds[token] = pos;
+            pos++;
+        }
+        if(tokenStarts[dimension] == tokenEnds[dimension]) { // missing measure attribute
+            skip(buffer, start, end);
+            return;
+        }
+
+        final int measureValue = parseInt(buffer, tokenStarts[dimension], tokenEnds[dimension]);
+        if(writer != null) { // second pass of converting, where all values are already in the dictionaries
+            for(int dim = 0; dim < dimension; dim++) {
+                values[dim] = dictionaries[dim].add(buffer, tokenStarts[dim], tokenEnds[dim]);
+            }
+            writer.write(omega, values, measureValue);
+        }
+        else if(valueCounts != null) { // first pass of converting
+            for(int dim = 0; dim < dimension; dim++) {
+                valueCounts[dim].increment(dictionaries[dim].add(buffer, tokenStarts[dim], tokenEnds[dim]));
+            }
+            mass += measureValue;
+        }
+        else {
+            if(omega == Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Too many tuples to be loaded in memory");
+            }
+            for(int dim = 0; dim < dimension; dim++) {
+                final int index = dictionaries[dim].add(buffer, tokenStarts[dim], tokenEnds[dim]);
+                columns[dim].add(index);
+            }
+            measureValues.add(measureValue);
+            mass += measureValue;
+        }
+        omega++;
+    }
+
+    private void skip(final ByteBuffer buffer, final int start, final int end) {
+        if(writer == null) { // skipped lines are reported only once when converting
+            System.out.println("Skipped Line: " + decode(buffer, start, end));
+        }
+    }
+
+    private static String decode(final ByteBuffer buffer, final int start, final int end) {
+        final byte[] bytes = new byte[end - start];
+        for(int i = start; i < end; i++) {
+            bytes[i - start] = buffer.get(i);
+        }
+        return new String(bytes, Charset.defaultCharset());
+    }
+
+    /**
+     * parse an integer without creating a string, falling back to Integer.parseInt for unusual inputs
+     * @param buffer mapped region of the input file
+     * @param start start of the token (inclusive)
+     * @param end end of the token (exclusive)
+     * @return parsed integer
+     */
+    private static int parseInt(final ByteBuffer buffer, final int start, final int end) {
+        boolean negative = false;
+        int pos = start;
+        if(buffer.get(pos) == '-') {
+            negative = true;
+            pos++;
+        }
+        if(pos == end || end - pos > 9) {
+            return Integer.parseInt(decode(buffer, start, end)); // sign only, or possible overflow
+        }
+        int value = 0;
+        for(; pos < end; pos++) {
+            final int digit = buffer.get(pos) - '0';
+            if(digit < 0 || digit > 9) {
+                return Integer.parseInt(decode(buffer, start, end));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * build a tensor from the columns parsed from consecutive byte ranges.
+     * Local dictionaries are merged into the dictionary of the first range in the order of the ranges,
+     * which maps attribute values to the same integers as parsing the whole file at once.
+     * @param chunks loaders of the consecutive byte ranges
+     * @param pool thread pool used for processing the attributes in parallel (or null)
+     * @return imported tensor
+     * @throws IOException
+     */
+    private static Tensor merge(final MappedTensorLoader[] chunks, final ExecutorService pool) throws IOException {
+        final int dimension = chunks[0].dimension;
+        final int[] chunkOffsets = new int[chunks.length + 1]; // chunk -> index of its first tuple
+        long omegaSum = 0;
+        long mass = 0;
+        for(int chunk = 0; chunk < chunks.length; chunk++) {
+            omegaSum += chunks[chunk].measureValues.size();
+            if(omegaSum > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Too many tuples to be loaded in memory");
+            }
+            chunkOffsets[chunk + 1] = (int) omegaSum;
+            mass += chunks[chunk].mass;
+        }
+        final int omega = (int) omegaSum;
+
+        final int[] measureValues = new int[omega];
+        for(int chunk = 0; chunk < chunks.length; chunk++) {
+            System.arraycopy(chunks[chunk].measureValues.array, 0, measureValues, chunkOffsets[chunk], chunks[chunk].measureValues.size());
+            chunks[chunk].measureValues.array = null;
+        }
+
+        final int[] cardinalities = new int[dimension];
+        final int[][] attributeColumns = new int[dimension][];
+        final int[][] attributeToValueToOffset = new int[dimension][];
+        final int[][] attributeToTuples = new int[dimension][];
+        final String[][] intToStrValue = new String[dimension][];
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for(int dim = 0; dim < dimension; dim++) {
+            final int attribute = dim;
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    final Dictionary dictionary = chunks[0].dictionaries[attribute];
+                    final int[] column = chunks.length == 1 ? chunks[0].columns[attribute].toArray() : new int[omega];
+                    for(int chunk = 0; chunk < chunks.length; chunk++) {
+                        final MappedTensorLoader loader = chunks[chunk];
+                        if(chunk > 0) {
+                            final int[] localColumn = loader.columns[attribute].array;
+                            final int[] localToGlobal = dictionary.addAll(loader.dictionaries[attribute]);
+                            final int offset = chunkOffsets[chunk];
+                            for(int i = 0; i < chunkOffsets[chunk + 1] - offset; i++) {
+                                column[offset + i] = localToGlobal[localColumn[i]];
+                            }
+                        }
+                        else if(chunks.length > 1) {
+                            System.arraycopy(loader.columns[attribute].array, 0, column, 0, chunkOffsets[1]);
+                        }
+                        loader.dictionaries[attribute] = null;
+                        loader.columns[attribute] = null;
+                    }
+
+                    final int cardinality = dictionary.size();
+                    final int[] valueToOffset = new int[cardinality + 1];
+                    attributeToTuples[attribute] = Tensor.buildIndex(column, cardinality, valueToOffset);
+                    attributeToValueToOffset[attribute] = valueToOffset;
+                    attributeColumns[attribute] = column;
+                    cardinalities[attribute] = cardinality;
+                    intToStrValue[attribute] = dictionary.toStrings(Charset.defaultCharset());
+                    return null;
+                }
+            });
+        }
+        TensorMethods.invokeAll(pool, tasks);
+
+        return new Tensor(dimension, cardinalities, omega, attributeColumns, attributeToValueToOffset, attributeToTuples, measureValues, mass, intToStrValue);
+    }
+
+    /**
+     * Growable array of ints
+     */
+    static final class GrowableIntArray {
+
+        int[] array = new int[16];
+        private int size = 0;
+
+        void add(final int value) {
+            if(size == array.length) {
+                array = Arrays.copyOf(array, (int) Math.min(Integer.MAX_VALUE - 8, 2L * size));
+            }
+            array[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return size == array.length ? array : Arrays.copyOf(array, size);
+        }
+    }
+
+    /**
+     * Growable array of counts indexed by integers assigned in a dictionary
+     */
+    static final class GrowableLongArray {
+
+        long[] array = new long[16];
+
+        /**
+         * increase the count at the given index by one, where the index is at most the largest index so far plus one
+         */
+        void increment(final int index) {
+            if(index == array.length) {
+                array = Arrays.copyOf(array, (int) Math.min(Integer.MAX_VALUE - 8, 2L * index));
+            }
+            array[index]++;
+        }
+    }
+
+    /**
+     * Open-addressing dictionary from byte strings to consecutive integers (assigned in the order of first appearance)
+     */
+    static final class Dictionary {
+
+        private byte[] pool = new byte[1024]; // concatenated bytes of the distinct values
+        private int poolSize = 0;
+        private int[] offsets = new int[17]; // index -> start of the index-th value in the pool
+        private int[] hashes = new int[16]; // index -> hash of the index-th value
+        private int size = 0;
+        private int[] table = new int[32]; // slot -> index + 1 (0 if the slot is empty)
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * return the index of the given byte string, adding it if it is new
+         * @param buffer buffer containing the byte string
+         * @param start start of the byte string (inclusive)
+         * @param end end of the byte string (exclusive)
+         * @return index of the byte string
+         */
+        int add(final ByteBuffer buffer, final int start, final int end) {
+            int hash = 0x811c9dc5;
+            for(int i = start; i < end; i++) {
+                hash = (hash ^ buffer.get(i)) * 0x01000193;
+            }
+            final int mask = table.length - 1;
+            int slot = mix(hash) & mask;
+            while(true) {
+                final int entry = table[slot];
+                if(entry == 0) {
+                    break;
+                }
+                final int index = entry - 1;
+                if(hashes[index] == hash && equals(index, buffer, start, end)) {
+                    return index;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            // new value
+            final int length = end - start;
+            if(poolSize + length > pool.length) {
+                pool = Arrays.copyOf(pool, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * pool.length, (long) poolSize + length)));
+            }
+            for(int i = start; i < end; i++) {
+                pool[poolSize++] = buffer.get(i);
+            }
+            if(size + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * size + 1);
+                hashes = Arrays.copyOf(hashes, 2 * size);
+            }
+            final int index = size++;
+            hashes[index] = hash;
+            offsets[index + 1] = poolSize;
+            table[slot] = index + 1;
+            if(2 * size > table.length) {
+                rehash();
+            }
+            return index;
+        }
+
+        /**
+         * add all byte strings in the given dictionary in the order of their indices
+         * @param other dictionary
+         * @return index in the other dictionary -> index in this dictionary
+         */
+        int[] addAll(final Dictionary other) {
+            final ByteBuffer buffer = ByteBuffer.wrap(other.pool);
+            final int[] otherToThis = new int[other.size];
+            for(int index = 0; index < other.size; index++) {
+                otherToThis[index] = add(buffer, other.offsets[index], other.offsets[index + 1]);
+            }
+            return otherToThis;
+        }
+
+        private boolean equals(final int index, final ByteBuffer buffer, final int start, final int end) {
+            final int offset = offsets[index];
+            if(offsets[index + 1] - offset != end - start) {
+                return false;
+            }
+            for(int i = start; i < end; i++) {
+                if(pool[offset + i - start] != buffer.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            final int mask = table.length - 1;
+            for(int index = 0; index < size; index++) {
+                int slot = mix(hashes[index]) & mask;
+                while(table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = index + 1;
+            }
+        }
+
+        private static int mix(final int hash) {
+            final int h = hash * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        String[] toStrings(final Charset charset) {
+            final String[] strings = new String[size];
+            for(int index = 0; index < size; index++) {
+                strings[index] = new String(pool, offsets[index], offsets[index + 1] - offsets[index], charset);
+            }
+            return strings;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+import java.io.IOException;
+
+/**
+ * Tensor whose attribute columns, measure column and inverted indices are stored off-heap (in direct or memory-mapped buffers),
+ * which can have more tuples than a Java array and can be larger than the Java heap
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class OffHeapTensor extends Tensor {
+
+    private final BigBuffer[] columns; // (n, i) -> the n-th attribute value of the i-th tuple (ints)
+    private final BigBuffer[] offsets; // (n, value) -> position in tuples[n] where the tuples with the given value for the n-th attribute start (longs)
+    private final BigBuffer[] tuples; // n -> tuples sorted by their n-th attribute values (ints or longs)
+    private final boolean longTupleIds; // whether tuple ids are stored as longs
+    private BigBuffer measures; // i -> measure attribute value of i-th tuple (ints)
+
+    /**
+     * Create a tensor with the given off-heap buffers
+     * @param dimension dimension
+     * @param cardinalities n -> cardinality of the n-th attribute
+     * @param omega number of tuples
+     * @param columns (n, i) -> the n-th attribute value of the i-th tuple (ints)
+     * @param offsets (n, value) -> position in tuples[n] where the tuples with the given value for the n-th attribute start (longs)
+     * @param tuples n -> tuples sorted by their n-th attribute values
+     * @param longTupleIds whether tuple ids are stored as longs (otherwise as ints)
+     * @param measures i -> measure attribute value of i-th tuple (ints)
+     * @param mass sum of measures attributes values
+     * @param intToStrValue (n, value) -> str attribute value mapped to the given integer value of the n-th attribute
+     */
+    public OffHeapTensor(int dimension, int[] cardinalities, long omega, BigBuffer[] columns, BigBuffer[] offsets, BigBuffer[] tuples, boolean longTupleIds, BigBuffer measures, long mass, String[][] intToStrValue) {
+        super(dimension, cardinalities, omega, mass, intToStrValue);
+        this.columns = columns;
+        this.offsets = offsets;
+        this.tuples = tuples;
+        this.longTupleIds = longTupleIds;
+        this.measures = measures;
+    }
+
+    /**
+     * Copy the given tensor (all fields except the measure column are shared)
+     * @param tensor a tensor to copy
+     */
+    private OffHeapTensor(OffHeapTensor tensor) {
+        super(tensor);
+        this.columns = tensor.columns;
+        this.offsets = tensor.offsets;
+        this.tuples = tensor.tuples;
+        this.longTupleIds = tensor.longTupleIds;
+        this.measures = tensor.measures.copy();
+    }
+
+    /**
+     * Copy the given tensor off-heap (tensors with more tuples than a Java array should be converted by MappedTensorLoader.convert and mapped instead)
+     * @param tensor tensor stored in Java arrays
+     * @return off-heap copy of the tensor
+     */
+    public static OffHeapTensor of(Tensor tensor) {
+        if(tensor instanceof OffHeapTensor) {
+            return (OffHeapTensor) tensor;
+        }
+        final int dimension = tensor.dimension;
+        final int omega = (int) tensor.omega;
+        final BigBuffer[] columns = new BigBuffer[dimension];
+        final BigBuffer[] offsets = new BigBuffer[dimension];
+        final BigBuffer[] tuples = new BigBuffer[dimension];
+        for(int dim = 0; dim < dimension; dim++) {
+            columns[dim] = BigBuffer.allocate(4L * omega);
+            columns[dim].putInts(0, tensor.attributeColumns[dim], 0, omega);
+            final int[] valueToOffset = tensor.attributeToValueToOffset[dim];
+            offsets[dim] = BigBuffer.allocate(8L * valueToOffset.length);
+            for(int value = 0; value < valueToOffset.length; value++) {
+                offsets[dim].putLong(value, valueToOffset[value]);
+            }
+            tuples[dim] = BigBuffer.allocate(4L * omega);
+            tuples[dim].putInts(0, tensor.attributeToTuples[dim], 0, omega);
+        }
+        final BigBuffer measures = BigBuffer.allocate(4L * omega);
+        measures.putInts(0, tensor.measureValues, 0, omega);
+        return new OffHeapTensor(dimension, tensor.cardinalities, omega, columns, offsets, tuples, false, measures, tensor.mass, tensor.intToStrValue);
+    }
+
+    /**
+     * Map a tensor written in the binary format without copying its columns and indices (the checksum is not verified)
+     * @param path path of the input file
+     * @return mapped tensor
+     * @throws IOException
+     */
+    public static OffHeapTensor map(String path) throws IOException {
+        return BinaryTensorFormat.map(path);
+    }
+
+    @Override
+    public int attributeValue(int attribute, long tuple) {
+        return columns[attribute].getInt(tuple);
+    }
+
+    @Override
+    public int measureValue(long tuple) {
+        return measures.getInt(tuple);
+    }
+
+    @Override
+    public void setMeasureValue(long tuple, int measureValue) {
+        measures.putInt(tuple, measureValue);
+    }
+
+    @Override
+    public long indexStart(int attribute, int value) {
+        return offsets[attribute].getLong(value);
+    }
+
+    @Override
+    public long indexEnd(int attribute, int value) {
+        return offsets[attribute].getLong(value + 1);
+    }
+
+    @Override
+    public long indexedTuple(int attribute, long position) {
+        return longTupleIds ? tuples[attribute].getLong(position) : tuples[attribute].getInt(position);
+    }
+
+    /**
+     * Copy this tensor (all fields except the measure column, which is copied off-heap, are shared)
+     * @return copied tensor
+     */
+    @Override
+    public Tensor copy() {
+        return new OffHeapTensor(this);
+    }
+}
@@ -0,0 +1,199 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * File of (attribute, value) records with a fixed width, used for keeping the order by which attribute values are removed on disk.
+ * Since the i-th record starts at byte i * recordSize, any suffix of the order can be read without reading the records before it.
+ * Layout of each record (little endian): attribute (1 byte) followed by value (4 bytes).
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class OrderingFile {
+
+    public static final int recordSize = 5;
+
+    /**
+     * maximum size of the buffer of each reader and writer (smaller buffers are allocated for fewer records)
+     */
+    private static final int bufferSize = recordSize << 20;
+
+    /**
+     * allocate a buffer for the given number of records
+     */
+    private static ByteBuffer allocate(final long count) {
+        return ByteBuffer.allocateDirect((int) Math.min(bufferSize, Math.max(1, count) * recordSize)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Sequential writer appending records to the end of a new file
+     */
+    public static final class Writer {
+
+        private final FileOutputStream stream;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        /**
+         * @param path path of the file
+         * @param count number of records to write (more can be written, with more writes to the file)
+         * @throws IOException
+         */
+        public Writer(final String path, final long count) throws IOException {
+            this.stream = new FileOutputStream(path);
+            this.channel = stream.getChannel();
+            this.buffer = allocate(count);
+        }
+
+        public void write(final byte attribute, final int value) throws IOException {
+            if(buffer.remaining() < recordSize) {
+                flush();
+            }
+            buffer.put(attribute);
+            buffer.putInt(value);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        public void close() throws IOException {
+            try {
+                flush();
+            }
+            finally {
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * Sequential reader of the records in a range of a file
+     */
+    public static final class Reader {
+
+        private final FileInputStream stream;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long position; // position in the file of the first byte not read into the buffer yet
+        private long remaining; // number of records not returned yet
+        private byte attribute;
+        private int value;
+
+        /**
+         * @param path path of the file
+         * @param first index of the first record to read
+         * @param count number of records to read
+         * @throws IOException
+         */
+        public Reader(final String path, final long first, final long count) throws IOException {
+            this.stream = new FileInputStream(path);
+            this.channel = stream.getChannel();
+            this.position = first * recordSize;
+            this.remaining = count;
+            this.buffer = allocate(count);
+            this.buffer.limit(0);
+        }
+
+        /**
+         * move to the next record
+         * @return false if no record is left
+         * @throws IOException
+         */
+        public boolean next() throws IOException {
+            if(remaining == 0) {
+                return false;
+            }
+            if(buffer.remaining() < recordSize) {
+                buffer.compact();
+                buffer.limit((int) Math.min(buffer.capacity(), remaining * recordSize)); // the bytes left in the buffer belong to the remaining records
+                while(buffer.position() < recordSize) {
+                    final int read = channel.read(buffer, position);
+                    if(read < 0) {
+                        throw new IOException("Unexpected end of the ordering file");
+                    }
+                    position += read;
+                }
+                buffer.flip();
+            }
+            attribute = buffer.get();
+            value = buffer.getInt();
+            remaining--;
+            return true;
+        }
+
+        /**
+         * @return attribute of the current record
+         */
+        public byte attribute() {
+            return attribute;
+        }
+
+        /**
+         * @return value of the current record
+         */
+        public int value() {
+            return value;
+        }
+
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+
+    /**
+     * copy the given range of records to a new file
+     * @param path path of the file
+     * @param first index of the first record to copy
+     * @param count number of records to copy
+     * @param newPath path of the new file
+     * @throws IOException
+     */
+    public static void copy(final String path, final long first, final long count, final String newPath) throws IOException {
+        final FileInputStream in = new FileInputStream(path);
+        try {
+            final FileOutputStream out = new FileOutputStream(newPath);
+            try {
+                final FileChannel source = in.getChannel();
+                long position = first * recordSize;
+                final long end = (first + count) * recordSize;
+                while(position < end) {
+                    final long transferred = source.transferTo(position, end - position, out.getChannel());
+                    if(transferred == 0 && position >= source.size()) {
+                        throw new IOException("Unexpected end of the ordering file");
+                    }
+                    position += transferred;
+                }
+            }
+            finally {
+                out.close();
+            }
+        }
+        finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+/**
+ * D-ary heap (d is a power of two) with a hash table for updating priorities.
+ * Each node stores its priority next to its value, so comparing the children of a node reads one contiguous block of memory
+ * instead of looking up the priority of each child in a separate array.
+ * Since both are stored in one array of longs, the capacity is at most maxCapacity (about 2^30 values).
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class PackedMaxHeap implements IMaxHeap {
+
+    /**
+     * maximum capacity, with which the packed nodes still fit in a Java array
+     */
+    public static final int maxCapacity = (Integer.MAX_VALUE - 8) / 2;
+
+    /**
+     * position -> (priority, value) packed as nodes[2 * position] and nodes[2 * position + 1]
+     */
+    private final long[] nodes;
+
+    /**
+     * value -> position (-1 if the value is not in the heap)
+     */
+    private final int[] positions;
+
+    /**
+     * Number of values in the heap
+     */
+    private int size;
+
+    /**
+     * Maximum number of values in the heap
+     */
+    private final int capacity;
+
+    /**
+     * Number of children of each node
+     */
+    private final int arity;
+
+    /**
+     * log2(arity)
+     */
+    private final int arityBits;
+
+    /**
+     *
+     * @param capacity maximum number of values in the heap, which should be at most maxCapacity
+     * @param arity number of children of each node, which should be a power of two
+     */
+    public PackedMaxHeap(int capacity, int arity) {
+        if(arity < 2 || Integer.bitCount(arity) != 1) {
+            throw new IllegalArgumentException("arity should be a power of two: " + arity);
+        }
+        if(capacity > maxCapacity) {
+            throw new IllegalArgumentException("capacity of a packed heap should be at most " + maxCapacity + ": " + capacity);
+        }
+        this.capacity = capacity;
+        this.arity = arity;
+        this.arityBits = Integer.numberOfTrailingZeros(arity);
+        this.nodes = new long[2 * capacity];
+        this.positions = new int[capacity];
+        this.size = 0;
+        for(int i = 0; i < capacity; i++) {
+            this.positions[i] = -1;
+        }
+    }
+
+    /**
+     * return a value with maximum priority
+     * @return (value, priority)
+     */
+    public Pair<Integer, Long> peek(){
+        if(size == 0){
+            return null;
+        }
+        return new Pair<Integer, Long>((int) nodes[1], nodes[0]);
+    }
+
+    /**
+     * return a value with maximum priority after removing it from the heap
+     * @return (value, priority)
+     */
+    public Pair<Integer, Long> poll(){
+        Pair<Integer, Long> top = this.peek();
+        pollKey();
+        return top;
+    }
+
+    /**
+     * return a value with maximum priority without allocating a pair
+     * @return value (-1 if the heap is empty)
+     */
+    public int peekKey(){
+        return size == 0 ? -1 : (int) nodes[1];
+    }
+
+    /**
+     * return the maximum priority without allocating a pair
+     * @return priority (undefined if the heap is empty)
+     */
+    public long peekPriority(){
+        return nodes[0];
+    }
+
+    /**
+     * remove a value with maximum priority from the heap without allocating a pair
+     * @return removed value (-1 if the heap is empty)
+     */
+    public int pollKey(){
+        if(size == 0){
+            return -1;
+        }
+        final int top = (int) nodes[1];
+        positions[top] = -1;
+        size--;
+        if(size > 0){
+            siftDown(0, (int) nodes[2 * size + 1], nodes[2 * size]);
+        }
+        return top;
+    }
+
+    /**
+     * update the priority of the given value to the given priority
+     * @param value value
+     * @param priority priority
+     */
+    public void updatePriority(int value, long priority){
+        final int pos = positions[value];
+        if(priority > nodes[2 * pos]) {
+            siftUp(pos, value, priority);
+        }
+        else {
+            siftDown(pos, value, priority);
+        }
+    }
+
+    /**
+     * return the priority of the given value
+     * @param value   value
+     * @return  priority
+     */
+    public long getPriority(int value){
+        return nodes[2 * positions[value]];
+    }
+
+    /**
+     * insert the given value with the given priority to the heap
+     * @param value value
+     * @param priority  priority
+     * @return  return false if the heap is already full return true otherwise
+     */
+    public boolean insert(int value, long priority){
+
+        if(size >= capacity)
+            return false;
+
+        siftUp(size++, value, priority);
+        return true;
+    }
+
+    /**
+     * move the given value up from the given position until its parent has a larger or equal priority
+     */
+    private void siftUp(int pos, int value, long priority){
+        while(pos > 0) {
+            final int parent = (pos - 1) >>> arityBits;
+            final long parentPriority = nodes[2 * parent];
+            if(parentPriority >= priority) {
+                break;
+            }
+            final int parentValue = (int) nodes[2 * parent + 1];
+            nodes[2 * pos] = parentPriority;
+            nodes[2 * pos + 1] = parentValue;
+            positions[parentValue] = pos;
+            pos = parent;
+        }
+        nodes[2 * pos] = priority;
+        nodes[2 * pos + 1] = value;
+        positions[value] = pos;
+    }
+
+    /**
+     * move the given value down from the given position until no child has a larger priority
+     */
+    private void siftDown(int pos, int value, long priority){
+        while(true) {
+            final long firstChild = ((long) pos << arityBits) + 1;
+            if(firstChild >= size) {
+                break;
+            }
+            final int lastChild = (int) Math.min(firstChild + arity, size);
+            int largest = (int) firstChild;
+            long largestPriority = nodes[2 * largest];
+            for(int child = largest + 1; child < lastChild; child++) {
+                final long childPriority = nodes[2 * child];
+                if(childPriority > largestPriority) {
+                    largest = child;
+                    largestPriority = childPriority;
+                }
+            }
+            if(largestPriority <= priority) {
+                break;
+            }
+            final int largestValue = (int) nodes[2 * largest + 1];
+            nodes[2 * pos] = largestPriority;
+            nodes[2 * pos + 1] = largestValue;
+            positions[largestValue] = pos;
+            pos = largest;
+        }
+        nodes[2 * pos] = priority;
+        nodes[2 * pos + 1] = value;
+        positions[value] = pos;
+    }
+}
@@ -27,6 +27,14 @@ public class Suspiciousness implements IDensityMeasure {
     private long massOfBlock;
     private double productOfCardinalitiesOfAll;
     private double productOfCardinalitiesOfBlock;
+    private double logRatioOfProducts; // log(productOfCardinalitiesOfBlock / productOfCardinalitiesOfAll)
+    private double[] removalLogs; // attribute -> log((cardinality - 1) / cardinality)
+    private double[] insertionLogs; // attribute -> log((cardinality + 1) / cardinality) (NaN if not computed yet)
+
+    /**
+     * products of integers below this bound are exact in double
+     */
+    private static final double exactProductBound = 9007199254740992.0; // 2^53
 
     public double initialize(int dimension, int[] cardinalities, long mass) {
         this.dimension = dimension;
@@ -38,6 +46,7 @@ public class Suspiciousness implements IDensityMeasure {
             productOfCardinalitiesOfAll *= cardinalities[dim];
         }
         productOfCardinalitiesOfBlock = productOfCardinalitiesOfAll;
+        initializeLogs();
         return density(massOfBlock, productOfCardinalitiesOfBlock);
     }
 
@@ -52,29 +61,57 @@ public class Suspiciousness implements IDensityMeasure {
             productOfCardinalitiesOfAll *= cardinalitiesOfAll[dim];
             productOfCardinalitiesOfBlock *= cardinaltiesOfBlock[dim];
         }
+        initializeLogs();
         return density(massOfBlock, productOfCardinalitiesOfBlock);
     }
 
+    private void initializeLogs() {
+        removalLogs = new double[dimension];
+        insertionLogs = new double[dimension];
+        for(int dim = 0; dim < dimension; dim++) {
+            updateLogs(dim);
+        }
+        logRatioOfProducts = Math.log(productOfCardinalitiesOfBlock / productOfCardinalitiesOfAll);
+    }
+
+    private void updateLogs(int attribute) {
+        removalLogs[attribute] = Math.log((cardinalities[attribute] - 1.0) / cardinalities[attribute]);
+        insertionLogs[attribute] = Double.NaN; // computed when needed, since peeling never inserts
+    }
+
     public double ifRemoved(int attribute, int numValues, long sumOfMasses) {
+        if(numValues == 1) {
+            return density(massOfBlock - sumOfMasses, productOfCardinalitiesOfBlock / cardinalities[attribute] * (cardinalities[attribute] - 1), logRatioOfProducts + removalLogs[attribute]);
+        }
         return density(massOfBlock - sumOfMasses, productOfCardinalitiesOfBlock / cardinalities[attribute] * (cardinalities[attribute] - numValues));
     }
 
     public double ifInserted(int attribute, int numValues, long sumOfMasses) {
+        if(numValues == 1) {
+            if(Double.isNaN(insertionLogs[attribute])) {
+                insertionLogs[attribute] = Math.log((cardinalities[attribute] + 1.0) / cardinalities[attribute]);
+            }
+            return density(massOfBlock + sumOfMasses, productOfCardinalitiesOfBlock / cardinalities[attribute] * (cardinalities[attribute] + 1), logRatioOfProducts + insertionLogs[attribute]);
+        }
         return density(massOfBlock + sumOfMasses, productOfCardinalitiesOfBlock / cardinalities[attribute] * (cardinalities[attribute] + numValues));
     }
 
     public double remove(int attribute, int numValues, long sumOfMasses) {
         cardinalities[attribute] -= numValues;
-        productOfCardinalitiesOfBlock = productOfCardinalities(cardinalities); //recompute due to the precision error
+        productOfCardinalitiesOfBlock = productOfCardinalities(productOfCardinalitiesOfBlock, cardinalities, attribute, cardinalities[attribute] + numValues);
+        updateLogs(attribute);
+        logRatioOfProducts = Math.log(productOfCardinalitiesOfBlock / productOfCardinalitiesOfAll);
         massOfBlock -= sumOfMasses;
-        return density(massOfBlock, productOfCardinalitiesOfBlock);
+        return density(massOfBlock, productOfCardinalitiesOfBlock, logRatioOfProducts);
     }
 
     public double insert(int attribute, int numValues, long sumOfMasses) {
         cardinalities[attribute] += numValues;
-        productOfCardinalitiesOfBlock = productOfCardinalities(cardinalities); //recompute due to the precision error
+        productOfCardinalitiesOfBlock = productOfCardinalities(productOfCardinalitiesOfBlock, cardinalities, attribute, cardinalities[attribute] - numValues);
+        updateLogs(attribute);
+        logRatioOfProducts = Math.log(productOfCardinalitiesOfBlock / productOfCardinalitiesOfAll);
         massOfBlock += sumOfMasses;
-        return density(massOfBlock, productOfCardinalitiesOfBlock);
+        return density(massOfBlock, productOfCardinalitiesOfBlock, logRatioOfProducts);
     }
 
     public double density(long massOfBlock, int[] cardinalitiesOfBlock) {
@@ -88,7 +125,16 @@ public class Suspiciousness implements IDensityMeasure {
     private double density(long massOfBlock, double productOfCardinalitiesOfBlock) {
         if(productOfCardinalitiesOfBlock == 0 || massOfBlock == 0)
             return - 1;
-        return massOfBlock * (Math.log((massOfBlock+0.0)/ massOfAll) - 1) + massOfAll * productOfCardinalitiesOfBlock / productOfCardinalitiesOfAll - massOfBlock * Math.log (productOfCardinalitiesOfBlock / productOfCardinalitiesOfAll);
+        return density(massOfBlock, productOfCardinalitiesOfBlock, Math.log (productOfCardinalitiesOfBlock / productOfCardinalitiesOfAll));
+    }
+
+    /**
+     * @param logRatioOfProducts log(productOfCardinalitiesOfBlock / productOfCardinalitiesOfAll), which is maintained incrementally
+     */
+    private double density(long massOfBlock, double productOfCardinalitiesOfBlock, double logRatioOfProducts) {
+        if(productOfCardinalitiesOfBlock == 0 || massOfBlock == 0)
+            return - 1;
+        return massOfBlock * (Math.log((massOfBlock+0.0)/ massOfAll) - 1) + massOfAll * productOfCardinalitiesOfBlock / productOfCardinalitiesOfAll - massOfBlock * logRatioOfProducts;
     }
 
     public static double productOfCardinalities(int[] cardinalities){
@@ -98,4 +144,24 @@ public class Suspiciousness implements IDensityMeasure {
         }
         return productOfCardinalities;
     }
+
+    /**
+     * return the product of cardinalities after the cardinality of the given attribute changed.
+     * the product is updated in O(1) time if it stays below 2^53, where it is exact and thus the same as the recomputed one,
+     * and it is recomputed otherwise due to the precision error
+     * @param productOfCardinalities product of cardinalities before the change
+     * @param cardinalities cardinalities after the change
+     * @param attribute attribute whose cardinality changed
+     * @param oldCardinality cardinality of the attribute before the change
+     * @return
+     */
+    public static double productOfCardinalities(double productOfCardinalities, int[] cardinalities, int attribute, int oldCardinality){
+        if(productOfCardinalities < exactProductBound && oldCardinality > 0) {
+            final double updated = productOfCardinalities / oldCardinality * cardinalities[attribute];
+            if(updated < exactProductBound) {
+                return updated;
+            }
+        }
+        return productOfCardinalities(cardinalities);
+    }
 }
@@ -15,8 +15,13 @@
 
 package mzoom;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 /**
- * Data structure to store tensor data
+ * Data structure to store tensor data.
+ * Tuples are stored column-wise with an inverted index in CSR format per attribute, which replaced the public fields attributes and attributeToValuesToTuples
+ * (the deprecated methods with the same names build them on demand), and omega is a long so that tensors stored off-heap can have more than 2^31 tuples.
  * @author Kijung Shin (kijungs@cs.cmu.edu)
  */
 public class Tensor {
@@ -25,13 +30,15 @@ public class Tensor {
 
 	public int[] cardinalities; // n -> cardinality of the n-th attribute
 
-    public int[][][] attributeToValuesToTuples; // (n, value) -> list of tuples which has the given value for the n-th attribute
+	public long omega; // number of tuples
+
+	public int[][] attributeColumns; // (n, i) -> the n-th attribute value of the i-th tuple (null if stored off-heap)
 
-	public int omega; // number of tuples
+    public int[][] attributeToValueToOffset; // (n, value) -> position in attributeToTuples[n] where the tuples with the given value for the n-th attribute start ((n, cardinality) -> omega) (null if stored off-heap)
 
-	public int[][] attributes; // (i, n) -> the n-th attribute value of the i-th tuple
+    public int[][] attributeToTuples; // n -> tuples sorted by their n-th attribute values (null if stored off-heap)
 
-	public int[] measureValues; // i -> measure attribute value of i-th tuple
+	public int[] measureValues; // i -> measure attribute value of i-th tuple (null if stored off-heap)
 
     public long mass; // sum of measures attributes values
 
@@ -41,6 +48,30 @@ public class Tensor {
 	 * Create a tensor with the given properties
 	 * @param dimension dimension
 	 * @param cardinalities n -> cardinality of the n-th attribute
+	 * @param omega number of tuples
+	 * @param attributeColumns   (n, i) -> the n-th attribute value of the i-th tuple
+     * @param attributeToValueToOffset (n, value) -> position in attributeToTuples[n] where the tuples with the given value for the n-th attribute start ((n, cardinality) -> omega)
+     * @param attributeToTuples n -> tuples sorted by their n-th attribute values
+	 * @param measureValues    i -> measure attribute value of i-th tuple
+	 * @param mass sum of measures attributes values
+     * @param intToStrValue // (n, value) -> str attribute value mapped to the given integer value of the n-th attribute
+	 */
+	public Tensor(int dimension, int[] cardinalities, int omega, int[][] attributeColumns, int[][] attributeToValueToOffset, int[][] attributeToTuples, int[] measureValues, long mass, String[][] intToStrValue) {
+        this.dimension = dimension;
+        this.cardinalities = cardinalities;
+        this.omega = omega;
+        this.attributeColumns = attributeColumns;
+        this.attributeToValueToOffset = attributeToValueToOffset;
+        this.attributeToTuples = attributeToTuples;
+        this.measureValues = measureValues;
+        this.mass = mass;
+        this.intToStrValue = intToStrValue;
+    }
+
+	/**
+	 * Create a tensor with the given properties, given in the row-wise layout
+	 * @param dimension dimension
+	 * @param cardinalities n -> cardinality of the n-th attribute
      * @param attributeToValuesToTuples; (n, value) -> list of tuples which has the given value for the n-th attribute
 	 * @param omega number of tuples
 	 * @param attributes   (i, n) -> the n-th attribute value of the i-th tuple
@@ -50,25 +81,178 @@ public class Tensor {
 	public Tensor(int dimension, int[] cardinalities, int[][][] attributeToValuesToTuples, int omega, int[][] attributes, int[] measureValues, long mass, String[][] intToStrValue) {
         this.dimension = dimension;
         this.cardinalities = cardinalities;
-        this.attributeToValuesToTuples = attributeToValuesToTuples;
         this.omega = omega;
-        this.attributes = attributes;
+        this.attributeColumns = new int[dimension][omega];
+        this.attributeToValueToOffset = new int[dimension][];
+        this.attributeToTuples = new int[dimension][omega];
+        for(int dim = 0; dim < dimension; dim++) {
+            final int[] column = attributeColumns[dim];
+            for(int i = 0; i < omega; i++) {
+                column[i] = attributes[i][dim];
+            }
+            final int[] offsets = new int[cardinalities[dim] + 1];
+            int offset = 0;
+            for(int value = 0; value < cardinalities[dim]; value++) {
+                offsets[value] = offset;
+                final int[] tuples = attributeToValuesToTuples[dim][value];
+                System.arraycopy(tuples, 0, attributeToTuples[dim], offset, tuples.length);
+                offset += tuples.length;
+            }
+            offsets[cardinalities[dim]] = offset;
+            attributeToValueToOffset[dim] = offsets;
+        }
         this.measureValues = measureValues;
         this.mass = mass;
         this.intToStrValue = intToStrValue;
     }
 
+	/**
+	 * Create a tensor whose tuples are stored by a subclass
+	 * @param dimension dimension
+	 * @param cardinalities n -> cardinality of the n-th attribute
+	 * @param omega number of tuples
+	 * @param mass sum of measures attributes values
+     * @param intToStrValue // (n, value) -> str attribute value mapped to the given integer value of the n-th attribute
+	 */
+	protected Tensor(int dimension, int[] cardinalities, long omega, long mass, String[][] intToStrValue) {
+        this.dimension = dimension;
+        this.cardinalities = cardinalities;
+        this.omega = omega;
+        this.mass = mass;
+        this.intToStrValue = intToStrValue;
+    }
+
+    /**
+     * return the n-th attribute value of the i-th tuple
+     * @param attribute n
+     * @param tuple i
+     * @return attribute value
+     */
+    public int attributeValue(int attribute, long tuple) {
+        return attributeColumns[attribute][(int) tuple];
+    }
+
+    /**
+     * return the measure attribute value of the i-th tuple
+     * @param tuple i
+     * @return measure attribute value
+     */
+    public int measureValue(long tuple) {
+        return measureValues[(int) tuple];
+    }
+
+    /**
+     * set the measure attribute value of the i-th tuple
+     * @param tuple i
+     * @param measureValue measure attribute value
+     */
+    public void setMeasureValue(long tuple, int measureValue) {
+        measureValues[(int) tuple] = measureValue;
+    }
+
+    /**
+     * return the position in the inverted index of the n-th attribute where the tuples with the given value start
+     * @param attribute n
+     * @param value attribute value
+     * @return start position (inclusive)
+     */
+    public long indexStart(int attribute, int value) {
+        return attributeToValueToOffset[attribute][value];
+    }
+
+    /**
+     * return the position in the inverted index of the n-th attribute where the tuples with the given value end
+     * @param attribute n
+     * @param value attribute value
+     * @return end position (exclusive)
+     */
+    public long indexEnd(int attribute, int value) {
+        return attributeToValueToOffset[attribute][value + 1];
+    }
+
+    /**
+     * return the tuple at the given position in the inverted index of the n-th attribute
+     * @param attribute n
+     * @param position position in the inverted index
+     * @return tuple
+     */
+    public long indexedTuple(int attribute, long position) {
+        return attributeToTuples[attribute][(int) position];
+    }
+
+    /**
+     * return the attribute values of each tuple in the row-wise layout, which was stored in the field attributes
+     * @return (i, n) -> the n-th attribute value of the i-th tuple (built on each call)
+     * @deprecated use attributeValue, which reads the columns without copying them
+     */
+    @Deprecated
+    public int[][] attributes() {
+        final int[][] attributes = new int[Math.toIntExact(omega)][dimension];
+        for(int i = 0; i < attributes.length; i++) {
+            for(int dim = 0; dim < dimension; dim++) {
+                attributes[i][dim] = attributeValue(dim, i);
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * return the tuples with each attribute value, which were stored in the field attributeToValuesToTuples
+     * @return (n, value) -> list of tuples which has the given value for the n-th attribute (built on each call)
+     * @deprecated use indexStart, indexEnd, and indexedTuple, which read the inverted index without copying it
+     */
+    @Deprecated
+    public int[][][] attributeToValuesToTuples() {
+        final int[][][] attributeToValuesToTuples = new int[dimension][][];
+        for(int dim = 0; dim < dimension; dim++) {
+            attributeToValuesToTuples[dim] = new int[cardinalities[dim]][];
+            for(int value = 0; value < cardinalities[dim]; value++) {
+                final long start = indexStart(dim, value);
+                final int[] tuples = new int[Math.toIntExact(indexEnd(dim, value) - start)];
+                for(int index = 0; index < tuples.length; index++) {
+                    tuples[index] = Math.toIntExact(indexedTuple(dim, start + index));
+                }
+                attributeToValuesToTuples[dim][value] = tuples;
+            }
+        }
+        return attributeToValuesToTuples;
+    }
+
+    /**
+     * Build the inverted index (in CSR format) of the given attribute column
+     * @param column i -> attribute value of the i-th tuple
+     * @param cardinality cardinality of the attribute
+     * @param valueToOffset array of size cardinality + 1, which is filled with the start position of each value
+     * @return tuples sorted by their attribute values
+     */
+    public static int[] buildIndex(int[] column, int cardinality, int[] valueToOffset) {
+        final int omega = column.length;
+        for(int i = 0; i < omega; i++) {
+            valueToOffset[column[i] + 1]++;
+        }
+        for(int value = 0; value < cardinality; value++) {
+            valueToOffset[value + 1] += valueToOffset[value];
+        }
+        final int[] tuples = new int[omega];
+        final int[] valueToCurrentOffset = Arrays.copyOf(valueToOffset, cardinality);
+        for(int i = 0; i < omega; i++) {
+            tuples[valueToCurrentOffset[column[i]]++] = i;
+        }
+        return tuples;
+    }
+
     /**
      * Copy the given tensor (all fields except measureValues are shared)
      * @param tensor a tensor to copy
      */
-    private Tensor(Tensor tensor) {
+    protected Tensor(Tensor tensor) {
         this.dimension = tensor.dimension;
         this.cardinalities = tensor.cardinalities;
-        this.attributeToValuesToTuples = tensor.attributeToValuesToTuples;
         this.omega = tensor.omega;
-        this.attributes = tensor.attributes;
-        this.measureValues = tensor.measureValues.clone();
+        this.attributeColumns = tensor.attributeColumns;
+        this.attributeToValueToOffset = tensor.attributeToValueToOffset;
+        this.attributeToTuples = tensor.attributeToTuples;
+        this.measureValues = tensor.measureValues == null ? null : tensor.measureValues.clone();
         this.mass = tensor.mass;
         this.intToStrValue = tensor.intToStrValue;
     }
@@ -80,4 +264,23 @@ public class Tensor {
     public Tensor copy() {
         return new Tensor(this);
     }
+
+    /**
+     * Write this tensor in the binary format, which can be loaded much faster than text files
+     * @param path path of the output file
+     * @throws IOException
+     */
+    public void save(String path) throws IOException {
+        BinaryTensorFormat.write(this, path);
+    }
+
+    /**
+     * Load a tensor written in the binary format
+     * @param path path of the input file
+     * @return loaded tensor
+     * @throws IOException
+     */
+    public static Tensor load(String path) throws IOException {
+        return BinaryTensorFormat.read(path, true);
+    }
 }
@@ -16,10 +16,16 @@
 package mzoom;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Methods for handling tensors
@@ -47,58 +53,101 @@ public class TensorMethods {
      * @throws IOException
      */
     public static Tensor importTensor(final String path, final String delim, final int dimension) throws IOException{
+        return importTensor(path, delim, dimension, 1);
+    }
+
+    /**
+     * load an input tensor in memory, parsing the file with the given number of threads
+     * (files in the binary format written by Tensor.save are loaded directly)
+     * @param path  path of the input tensor file
+     * @param delim delimiter used in the file
+     * @param dimension number of attributes
+     * @param numThreads number of threads (used only if the delimiter is a single character)
+     * @return  imported tensor
+     * @throws IOException
+     */
+    public static Tensor importTensor(final String path, final String delim, final int dimension, final int numThreads) throws IOException{
+        return importTensor(path, delim, dimension, numThreads, false);
+    }
+
+    /**
+     * load an input tensor, parsing the file with the given number of threads
+     * (files in the binary format written by Tensor.save are loaded directly, or mapped if offHeap is true).
+     * If offHeap is true, text files are converted to a temporary file in the binary format, which is then mapped,
+     * so that tensors with more tuples than a Java array or larger than the Java heap can be loaded
+     * @param path  path of the input tensor file
+     * @param delim delimiter used in the file
+     * @param dimension number of attributes
+     * @param numThreads number of threads (used only if the delimiter is a single character)
+     * @param offHeap whether to store the tensor off-heap
+     * @return  imported tensor
+     * @throws IOException
+     */
+    public static Tensor importTensor(final String path, final String delim, final int dimension, final int numThreads, final boolean offHeap) throws IOException{
 
         long start = System.currentTimeMillis();
 
+        Tensor tensor;
+        if(BinaryTensorFormat.isBinary(path)) {
+            tensor = offHeap ? OffHeapTensor.map(path) : Tensor.load(path);
+            if(tensor.dimension != dimension) {
+                throw new IOException("The tensor in " + path + " has " + tensor.dimension + " attributes, not " + dimension);
+            }
+        }
+        else if(offHeap && MappedTensorLoader.supports(delim)) {
+            final File binary = File.createTempFile("mzoom", ".tensor");
+            binary.deleteOnExit();
+            MappedTensorLoader.convert(path, delim, dimension, binary.getPath(), false);
+            tensor = OffHeapTensor.map(binary.getPath());
+        }
+        else if(MappedTensorLoader.supports(delim)) {
+            tensor = MappedTensorLoader.load(path, delim, dimension, numThreads);
+        }
+        else {
+            tensor = importTensorByLines(path, delim, dimension);
+        }
+        if(offHeap) { // delimiters which are regular expressions
+            tensor = OffHeapTensor.of(tensor);
+        }
+        System.out.println("input data were loaded. " + (System.currentTimeMillis() - start + 0.0)/1000 + " seconds was taken.");
+        return tensor;
+    }
+
+    /**
+     * load an input tensor in memory by reading the file line by line twice (used for delimiters which are regular expressions)
+     * @param path  path of the input tensor file
+     * @param delim delimiter used in the file
+     * @param dimension number of attributes
+     * @return  imported tensor
+     * @throws IOException
+     */
+    private static Tensor importTensorByLines(final String path, final String delim, final int dimension) throws IOException{
+
         int omega = 0; // number of tuples
-        final int[] maxValues = new int[dimension];
         final Map<String, Integer>[] strToIntValue = new Map[dimension];
-        final Map<Integer, Integer>[] attributeToValueToNum = new Map[dimension];
         for(int dim = 0; dim < dimension; dim++) {
-            attributeToValueToNum[dim] = new HashMap();
-            strToIntValue[dim] = new HashMap();
+            strToIntValue[dim] = new HashMap<String, Integer>();
         }
         final BufferedReader br = new BufferedReader(new FileReader(path));
         while(true){
             final String line = br.readLine();
             if(line==null)
                 break;
-            omega++;
             final String[] tokens = line.split(delim);
             if(tokens.length < dimension + 1) {
                 System.out.println("Skipped Line: " + line);
                 continue;
             }
+            omega++;
             for(int dim = 0; dim < dimension; dim++) {
-
                 if(!strToIntValue[dim].containsKey(tokens[dim])) {
                     strToIntValue[dim].put(tokens[dim], strToIntValue[dim].size());
                 }
-
-                int index = strToIntValue[dim].get(tokens[dim]);
-                if(attributeToValueToNum[dim].containsKey(index)) {
-                    attributeToValueToNum[dim].put(index, attributeToValueToNum[dim].get(index) + 1);
-                }
-                else {
-                    attributeToValueToNum[dim].put(index, 1);
-                }
-                maxValues[dim] = Math.max(maxValues[dim], index);
             }
         }
         br.close();
-        final int[] cardinalities = new int[dimension];
-        final int[][] attributeToValueToNumArr = new int[dimension][];
-        for(int dim = 0; dim < dimension; dim++) {
-            cardinalities[dim] = maxValues[dim]+1;
-            attributeToValueToNumArr[dim] = new int[cardinalities[dim]];
-            for (int index : attributeToValueToNum[dim].keySet()) {
-                attributeToValueToNumArr[dim][index] = attributeToValueToNum[dim].get(index);
-            }
-        }
 
-        Tensor tensor = importTensor(path, delim, dimension, omega, cardinalities, attributeToValueToNumArr, strToIntValue);
-        System.out.println("input data were loaded. " + (System.currentTimeMillis() - start + 0.0)/1000 + " seconds was taken.");
-        return tensor;
+        return importTensor(path, delim, dimension, omega, strToIntValue);
     }
 
     /**
@@ -107,27 +156,15 @@ public class TensorMethods {
      * @param delim delimiter used in the file
      * @param dimension number of attributes
      * @param omega	number of tuples
-     * @param cardinalities	n -> cardinality of the n-th attribute
-     * @param attributeToValueToNum n, value -> number of tuples which have the given value as the n-th attribute
      * @param strToIntValue (n, value) -> int attribute value mapped to the given string value of the n-th attribute
      * @return imported tensor
      * @throws IOException
      */
-    private static Tensor importTensor(final String path, final String delim, final int dimension, final int omega, final int[] cardinalities, int[][] attributeToValueToNum, Map<String, Integer>[] strToIntValue) throws IOException {
+    private static Tensor importTensor(final String path, final String delim, final int dimension, final int omega, Map<String, Integer>[] strToIntValue) throws IOException {
 
-        final int[][][] attributeToValueToTuples = new int[dimension][][]; // n, value -> list of tuples which have the given value as the n-th attribute
-        final int[][] attributeToValueToCurrentCardinality = new int[dimension][];
-        final int[][] attributes = new int[omega][dimension];
+        final int[][] attributeColumns = new int[dimension][omega];
         final int[] values = new int[omega];
 
-        for (int dim = 0; dim < dimension; dim++) {
-            attributeToValueToTuples[dim] = new int[cardinalities[dim]][];
-            attributeToValueToCurrentCardinality[dim] = new int[cardinalities[dim]];
-            for (int i = 0; i < cardinalities[dim]; i++) {
-                attributeToValueToTuples[dim][i] = new int[attributeToValueToNum[dim][i]];
-            }
-        }
-
         final BufferedReader br = new BufferedReader(new FileReader(path));
         long sum = 0;
 
@@ -138,13 +175,10 @@ public class TensorMethods {
                 break;
             String[] tokens = line.split(delim);
             if(tokens.length < dimension + 1) {
-                System.out.println("Skipped Line: " + line);
                 continue;
             }
             for (int dim = 0; dim < dimension; dim++) {
-                int index = strToIntValue[dim].get(tokens[dim]);
-                attributeToValueToTuples[dim][index][attributeToValueToCurrentCardinality[dim][index]++] = curTupleNum;
-                attributes[curTupleNum][dim] = index;
+                attributeColumns[dim][curTupleNum] = strToIntValue[dim].get(tokens[dim]);
             }
             values[curTupleNum] = Integer.valueOf(tokens[dimension]);
             sum += values[curTupleNum];
@@ -153,15 +187,21 @@ public class TensorMethods {
 
         br.close();
 
+        final int[] cardinalities = new int[dimension];
+        final int[][] attributeToValueToOffset = new int[dimension][];
+        final int[][] attributeToTuples = new int[dimension][];
         String[][] intToStrValue = new String[dimension][];
         for(int dim = 0; dim< dimension; dim++) {
+            cardinalities[dim] = strToIntValue[dim].size();
+            attributeToValueToOffset[dim] = new int[cardinalities[dim] + 1];
+            attributeToTuples[dim] = Tensor.buildIndex(attributeColumns[dim], cardinalities[dim], attributeToValueToOffset[dim]);
             intToStrValue[dim] = new String[strToIntValue[dim].size()];
             for(String key : strToIntValue[dim].keySet()) {
                 intToStrValue[dim][strToIntValue[dim].get(key)] = key;
             }
         }
 
-        return new Tensor(dimension, cardinalities, attributeToValueToTuples, omega, attributes, values, sum, intToStrValue);
+        return new Tensor(dimension, cardinalities, omega, attributeColumns, attributeToValueToOffset, attributeToTuples, values, sum, intToStrValue);
     }
 
     /**
@@ -169,26 +209,62 @@ public class TensorMethods {
      * @param tensor    tensor
      * @return (n, value) -> mass of the given value of the n-th attribute
      */
-    public static int[][] attributeValueMasses(Tensor tensor){
+    public static long[][] attributeValueMasses(Tensor tensor){
 
         int dimension = tensor.dimension;
         int[] cardinalities = tensor.cardinalities;
-        int[][] mass = new int[dimension][];
+        long[][] mass = new long[dimension][];
         for(int dim=0; dim<dimension; dim++){
-            mass[dim] = new int[cardinalities[dim]];
+            mass[dim] = new long[cardinalities[dim]];
         }
 
-        int[][] attributes = tensor.attributes;
-        int[] values = tensor.measureValues;
-
-        for(int i=0; i<tensor.omega; i++){
-            int value = values[i];
-            for(int dim=0; dim<dimension; dim++){
-                mass[dim][attributes[i][dim]] += value;
+        for(int dim=0; dim<dimension; dim++){
+            long[] attributeMass = mass[dim];
+            for(long i=0; i<tensor.omega; i++){
+                attributeMass[tensor.attributeValue(dim, i)] += tensor.measureValue(i);
             }
         }
 
         return mass;
     }
-    
+
+    /**
+     * run the given tasks using the given thread pool (or in the current thread if no pool is given)
+     * @param pool thread pool
+     * @param tasks tasks to run
+     * @throws IOException
+     */
+    static void invokeAll(final ExecutorService pool, final List<Callable<Void>> tasks) throws IOException {
+        try {
+            if(pool == null) {
+                for (Callable<Void> task : tasks) {
+                    task.call();
+                }
+                return;
+            }
+            for(Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        }
+        catch(ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if(cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt(); // so that the callers can still see the interrupt
+            throw new IOException(e);
+        }
+        catch(IOException | RuntimeException e) {
+            throw e;
+        }
+        catch(Exception e) {
+            throw new IOException(e);
+        }
+    }
 }
@@ -0,0 +1,211 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Part of a tensor consisting of a subset of its tuples, stored as a separate tensor whose attribute values are renumbered from zero.
+ * If no tuple outside a part has any of the values of a given attribute in the part, every block in the part
+ * contains the same tuples in the whole tensor, and thus blocks in different parts do not share any tuple.
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class TensorPartition {
+
+    /**
+     * tuples in the part
+     */
+    public final Tensor tensor;
+
+    /**
+     * (n, value in the part) -> value of the n-th attribute in the whole tensor
+     */
+    public final int[][] localToGlobal;
+
+    public TensorPartition(Tensor tensor, int[][] localToGlobal) {
+        this.tensor = tensor;
+        this.localToGlobal = localToGlobal;
+    }
+
+    /**
+     * @param block attribute values of a block in the part
+     * @return the attribute values of the block in the whole tensor
+     */
+    public BlockValues toGlobal(BlockValues block) {
+        final int[][] attributeToValues = new int[block.dimension()][];
+        for(int dim = 0; dim < block.dimension(); dim++) {
+            final int[] values = block.values(dim);
+            final int[] globalValues = new int[values.length];
+            for(int index = 0; index < values.length; index++) {
+                globalValues[index] = localToGlobal[dim][values[index]];
+            }
+            attributeToValues[dim] = globalValues; // sorted, since values are renumbered in increasing order
+        }
+        return new BlockValues(attributeToValues);
+    }
+
+    /**
+     * split the given tensor by the values of the given attribute
+     * @param tensor tensor
+     * @param attribute attribute
+     * @return one part for each value of the attribute
+     * @throws ArithmeticException if the tensor has too many tuples to be split in Java arrays
+     */
+    public static List<TensorPartition> byAttribute(final Tensor tensor, final int attribute) {
+        final int[] tupleToPart = new int[Math.toIntExact(tensor.omega)];
+        for(int i = 0; i < tensor.omega; i++) {
+            tupleToPart[i] = tensor.attributeValue(attribute, i);
+        }
+        return split(tensor, tupleToPart, tensor.cardinalities[attribute]);
+    }
+
+    /**
+     * split the given tensor into connected components, where two tuples are connected if they share the value of any attribute
+     * @param tensor tensor
+     * @return one part for each connected component
+     * @throws ArithmeticException if the tensor has too many tuples to be split in Java arrays
+     */
+    public static List<TensorPartition> byComponents(final Tensor tensor) {
+        final int dimension = tensor.dimension;
+        final int[] attributeToFirstNode = new int[dimension + 1]; // the values of the n-th attribute are the nodes starting from attributeToFirstNode[n]
+        for(int dim = 0; dim < dimension; dim++) {
+            attributeToFirstNode[dim + 1] = attributeToFirstNode[dim] + tensor.cardinalities[dim];
+        }
+
+        // union-find over attribute values
+        final int[] parents = new int[attributeToFirstNode[dimension]];
+        for(int node = 0; node < parents.length; node++) {
+            parents[node] = node;
+        }
+        for(long i = 0; i < tensor.omega; i++) {
+            int root = find(parents, tensor.attributeValue(0, i));
+            for(int dim = 1; dim < dimension; dim++) {
+                final int other = find(parents, attributeToFirstNode[dim] + tensor.attributeValue(dim, i));
+                if(other != root) {
+                    if(other < root) {
+                        parents[root] = other;
+                        root = other;
+                    }
+                    else {
+                        parents[other] = root;
+                    }
+                }
+            }
+        }
+
+        // components are numbered in the order of their smallest values of the first attribute
+        final int[] rootToComponent = new int[parents.length];
+        Arrays.fill(rootToComponent, -1);
+        int numComponents = 0;
+        for(int value = 0; value < tensor.cardinalities[0]; value++) {
+            final int root = find(parents, value);
+            if(rootToComponent[root] == -1) {
+                rootToComponent[root] = numComponents++;
+            }
+        }
+        final int[] tupleToPart = new int[Math.toIntExact(tensor.omega)];
+        for(int i = 0; i < tensor.omega; i++) {
+            tupleToPart[i] = rootToComponent[find(parents, tensor.attributeValue(0, i))];
+        }
+        return split(tensor, tupleToPart, numComponents);
+    }
+
+    private static int find(final int[] parents, int node) {
+        while(parents[node] != node) {
+            parents[node] = parents[parents[node]];
+            node = parents[node];
+        }
+        return node;
+    }
+
+    /**
+     * split the given tensor into the given parts
+     * @param tensor tensor
+     * @param tupleToPart i -> part containing the i-th tuple
+     * @param numParts number of parts
+     * @return non-empty parts in the order of their indices
+     */
+    private static List<TensorPartition> split(final Tensor tensor, final int[] tupleToPart, final int numParts) {
+        final int dimension = tensor.dimension;
+
+        // tuples sorted by their parts
+        final int[] partToOffset = new int[numParts + 1];
+        final int[] tuples = Tensor.buildIndex(tupleToPart, numParts, partToOffset);
+
+        final int[][] globalToLocal = new int[dimension][];
+        for(int dim = 0; dim < dimension; dim++) {
+            globalToLocal[dim] = new int[tensor.cardinalities[dim]];
+            Arrays.fill(globalToLocal[dim], -1);
+        }
+
+        final List<TensorPartition> parts = new ArrayList<TensorPartition>();
+        for(int part = 0; part < numParts; part++) {
+            final int start = partToOffset[part];
+            final int partOmega = partToOffset[part + 1] - start;
+            if(partOmega == 0) {
+                continue;
+            }
+
+            final int[] cardinalities = new int[dimension];
+            final int[][] localToGlobal = new int[dimension][];
+            final int[][] attributeColumns = new int[dimension][partOmega];
+            final int[][] attributeToValueToOffset = new int[dimension][];
+            final int[][] attributeToTuples = new int[dimension][];
+            final String[][] intToStrValue = new String[dimension][];
+            for(int dim = 0; dim < dimension; dim++) {
+                // values are renumbered in increasing order so that ties among them are broken in the same order as in the whole tensor
+                final int[] values = new int[partOmega];
+                int numValues = 0;
+                for(int index = 0; index < partOmega; index++) {
+                    final int value = tensor.attributeValue(dim, tuples[start + index]);
+                    if(globalToLocal[dim][value] == -1) {
+                        globalToLocal[dim][value] = 0;
+                        values[numValues++] = value;
+                    }
+                }
+                final int[] partValues = Arrays.copyOf(values, numValues);
+                Arrays.sort(partValues);
+                intToStrValue[dim] = new String[numValues];
+                for(int local = 0; local < numValues; local++) {
+                    globalToLocal[dim][partValues[local]] = local;
+                    intToStrValue[dim][local] = tensor.intToStrValue[dim][partValues[local]];
+                }
+                final int[] column = attributeColumns[dim];
+                for(int index = 0; index < partOmega; index++) {
+                    column[index] = globalToLocal[dim][tensor.attributeValue(dim, tuples[start + index])];
+                }
+                for(int value : partValues) {
+                    globalToLocal[dim][value] = -1; // reset for the next part
+                }
+                cardinalities[dim] = numValues;
+                localToGlobal[dim] = partValues;
+                attributeToValueToOffset[dim] = new int[numValues + 1];
+                attributeToTuples[dim] = Tensor.buildIndex(column, numValues, attributeToValueToOffset[dim]);
+            }
+
+            final int[] measureValues = new int[partOmega];
+            long mass = 0;
+            for(int index = 0; index < partOmega; index++) {
+                measureValues[index] = tensor.measureValue(tuples[start + index]);
+                mass += measureValues[index];
+            }
+            parts.add(new TensorPartition(new Tensor(dimension, cardinalities, partOmega, attributeColumns, attributeToValueToOffset, attributeToTuples, measureValues, mass, intToStrValue), localToGlobal));
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,120 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for converting text files to the binary format without loading them in memory
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class BinaryTensorFormatTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String writeText() throws IOException {
+        final File file = folder.newFile("tensor.txt");
+        final String text = "a,x,p,3\nb,y,p,1\na,y,q,2\nbroken line\nc,x,q,5\nb,x,p,4\r\na,z,r,1\n";
+        Files.write(file.toPath(), text.getBytes(Charset.forName("UTF-8")));
+        return file.getPath();
+    }
+
+    @Test
+    public void convertWritesTheSameFileAsSave() throws IOException {
+        final String text = writeText();
+        final String saved = new File(folder.getRoot(), "saved.tensor").getPath();
+        final String converted = new File(folder.getRoot(), "converted.tensor").getPath();
+        MappedTensorLoader.load(text, ",", 3).save(saved);
+        MappedTensorLoader.convert(text, ",", 3, converted, false);
+        assertArrayEquals(Files.readAllBytes(new File(saved).toPath()), Files.readAllBytes(new File(converted).toPath()));
+    }
+
+    @Test
+    public void longTupleIdsRoundTrip() throws IOException {
+        final String text = writeText();
+        final String converted = new File(folder.getRoot(), "long.tensor").getPath();
+        MappedTensorLoader.convert(text, ",", 3, converted, true);
+        assertEquals(8, tupleIdBytes(converted));
+
+        final Tensor expected = MappedTensorLoader.load(text, ",", 3);
+        assertSameTensor(expected, BinaryTensorFormat.map(converted));
+        assertSameTensor(expected, BinaryTensorFormat.read(converted, true));
+
+        // mapped tensors with long tuple ids are written back with int tuple ids
+        final String saved = new File(folder.getRoot(), "saved.tensor").getPath();
+        final String rewritten = new File(folder.getRoot(), "rewritten.tensor").getPath();
+        expected.save(saved);
+        BinaryTensorFormat.write(BinaryTensorFormat.map(converted), rewritten);
+        assertArrayEquals(Files.readAllBytes(new File(saved).toPath()), Files.readAllBytes(new File(rewritten).toPath()));
+    }
+
+    @Test
+    public void offHeapImportDoesNotLoadTextInMemory() throws IOException {
+        final String text = writeText();
+        final Tensor tensor = TensorMethods.importTensor(text, ",", 3, 1, true);
+        assertEquals(OffHeapTensor.class, tensor.getClass());
+        assertSameTensor(MappedTensorLoader.load(text, ",", 3), tensor);
+    }
+
+    private static int tupleIdBytes(final String path) throws IOException {
+        final RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            final ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            file.getChannel().read(buffer, 0);
+            return buffer.getInt(12);
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    private static void assertSameTensor(final Tensor expected, final Tensor actual) {
+        assertEquals(expected.dimension, actual.dimension);
+        assertEquals(expected.omega, actual.omega);
+        assertEquals(expected.mass, actual.mass);
+        assertArrayEquals(expected.cardinalities, actual.cardinalities);
+        for(int dim = 0; dim < expected.dimension; dim++) {
+            assertArrayEquals(expected.intToStrValue[dim], actual.intToStrValue[dim]);
+            for(long i = 0; i < expected.omega; i++) {
+                assertEquals(expected.attributeValue(dim, i), actual.attributeValue(dim, i));
+            }
+            for(int value = 0; value < expected.cardinalities[dim]; value++) {
+                assertEquals(expected.indexStart(dim, value), actual.indexStart(dim, value));
+                assertEquals(expected.indexEnd(dim, value), actual.indexEnd(dim, value));
+            }
+            for(long position = 0; position < expected.omega; position++) {
+                assertEquals(expected.indexedTuple(dim, position), actual.indexedTuple(dim, position));
+            }
+        }
+        for(long i = 0; i < expected.omega; i++) {
+            assertEquals(expected.measureValue(i), actual.measureValue(i));
+        }
+    }
+}
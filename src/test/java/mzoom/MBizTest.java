@@ -0,0 +1,66 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests for M-Biz
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class MBizTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Tensor load(final String text) throws IOException {
+        final File file = folder.newFile();
+        Files.write(file.toPath(), text.getBytes(Charset.forName("UTF-8")));
+        return MappedTensorLoader.load(file.getPath(), ",", 3);
+    }
+
+    private static BlockValues findOneBlock(final Tensor tensor, final int lower, final String heap) throws IOException {
+        final MBiz mbiz = new MBiz();
+        mbiz.out = new PrintStream(new ByteArrayOutputStream());
+        mbiz.setHeapFactory(HeapFactory.fromName(heap));
+        return mbiz.findOneBlock(tensor.copy(), lower, Integer.MAX_VALUE, new DensityMeasure(DensityMeasure.Arithmetic)).getBlockValues(tensor.dimension);
+    }
+
+    /**
+     * with a negative measure value, the mass of a value in the block can be negative or exceed the total mass, which bucket queues cannot hold
+     */
+    @Test
+    public void bucketHeapWithNegativeMeasureValues() throws IOException {
+        final Tensor tensor = load("a,x,p,10\na,y,p,3\nc,z,r,-8\n");
+        final int lower = 7; // the seed block is the whole tensor, where the values c, z, and r have negative masses
+        final BlockValues expected = findOneBlock(tensor, lower, "binary");
+        final BlockValues actual = findOneBlock(tensor, lower, "bucket");
+        for(int dim = 0; dim < tensor.dimension; dim++) {
+            assertArrayEquals(expected.values(dim), actual.values(dim));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for M-Zoom
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class MZoomTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Tensor load(final String text, final int dimension) throws IOException {
+        final File file = folder.newFile();
+        Files.write(file.toPath(), text.getBytes(Charset.forName("UTF-8")));
+        return MappedTensorLoader.load(file.getPath(), ",", dimension);
+    }
+
+    private static BlockValues findOneBlock(final Tensor tensor, final double batchEpsilon) throws IOException {
+        final MZoom mzoom = new MZoom();
+        mzoom.out = new PrintStream(new ByteArrayOutputStream());
+        mzoom.setBatchEpsilon(batchEpsilon);
+        return mzoom.findOneBlock(tensor.copy(), 0, Integer.MAX_VALUE, new DensityMeasure(DensityMeasure.Arithmetic)).getBlockValues(tensor.dimension);
+    }
+
+    private static BlockValues findOneBlock(final Tensor tensor, final String heap) throws IOException {
+        final MZoom mzoom = new MZoom();
+        mzoom.out = new PrintStream(new ByteArrayOutputStream());
+        mzoom.setHeapFactory(HeapFactory.fromName(heap));
+        return mzoom.findOneBlock(tensor.copy(), 0, Integer.MAX_VALUE, new DensityMeasure(DensityMeasure.Arithmetic)).getBlockValues(tensor.dimension);
+    }
+
+    /**
+     * @return arithmetic average mass of the given block
+     */
+    private static double density(final Tensor tensor, final boolean[][] block) {
+        long mass = 0;
+        for(long i = 0; i < tensor.omega; i++) {
+            boolean included = true;
+            for(int dim = 0; dim < tensor.dimension && included; dim++) {
+                included = block[dim][tensor.attributeValue(dim, i)];
+            }
+            if(included) {
+                mass += tensor.measureValue(i);
+            }
+        }
+        int sumOfCardinalities = 0;
+        for(boolean[] values : block) {
+            for(boolean included : values) {
+                sumOfCardinalities += included ? 1 : 0;
+            }
+        }
+        return sumOfCardinalities == 0 ? 0 : (double) mass * tensor.dimension / sumOfCardinalities;
+    }
+
+    private static double density(final Tensor tensor, final BlockValues block) {
+        return density(tensor, block.getBitMask(tensor.cardinalities));
+    }
+
+    /**
+     * @return maximum density among all blocks, found by enumerating them
+     */
+    private static double maxDensity(final Tensor tensor) {
+        int sumOfCardinalities = 0;
+        for(int dim = 0; dim < tensor.dimension; dim++) {
+            sumOfCardinalities += tensor.cardinalities[dim];
+        }
+        double maxDensity = 0;
+        final boolean[][] block = new boolean[tensor.dimension][];
+        for(long subset = 0; subset < 1L << sumOfCardinalities; subset++) {
+            int bit = 0;
+            for(int dim = 0; dim < tensor.dimension; dim++) {
+                block[dim] = new boolean[tensor.cardinalities[dim]];
+                for(int value = 0; value < tensor.cardinalities[dim]; value++) {
+                    block[dim][value] = (subset >>> bit++ & 1) == 1;
+                }
+            }
+            maxDensity = Math.max(maxDensity, density(tensor, block));
+        }
+        return maxDensity;
+    }
+
+    /**
+     * a dense tuple hidden among many light tuples sharing its first attribute value,
+     * where the attribute with the smallest heap top does not have the smallest average mass
+     */
+    @Test
+    public void batchPeelingGuaranteeOnAdversarialTensor() throws IOException {
+        final StringBuilder text = new StringBuilder("a,b0,c0,10000\n");
+        for(int j = 1; j < 20; j++) {
+            text.append("a,b").append(j).append(",c").append(j).append(",2\n");
+        }
+        text.append("u,b1,c1,1\n");
+        final Tensor tensor = load(text.toString(), 3);
+        final double maxDensity = 10000; // the block with only the first tuple
+        for(double epsilon : new double[]{0, 0.5, 1, 3}) {
+            final double density = density(tensor, findOneBlock(tensor, epsilon));
+            assertTrue("epsilon " + epsilon + ": " + density, density >= maxDensity / ((1 + epsilon) * tensor.dimension));
+        }
+    }
+
+    /**
+     * peeling subtracts only positive measure values, so the mass of a value whose tuples have different signs can become negative,
+     * which bucket queues cannot hold even though the initial masses of all values are between zero and their maximum
+     */
+    @Test
+    public void bucketHeapWithNegativeMeasureValues() throws IOException {
+        final Tensor tensor = load("a1,b1,5\na2,b1,-2\na1,b1,0\na1,b1,-3\na0,b0,6\na2,b0,-4\na2,b2,4\na1,b2,-2\n", 2);
+        final BlockValues expected = findOneBlock(tensor, "binary");
+        final BlockValues actual = findOneBlock(tensor, "bucket");
+        for(int dim = 0; dim < tensor.dimension; dim++) {
+            assertArrayEquals(expected.values(dim), actual.values(dim));
+        }
+    }
+
+    @Test
+    public void batchPeelingGuaranteeOnRandomTensors() throws IOException {
+        final Random random = new Random(0);
+        for(int trial = 0; trial < 30; trial++) {
+            final StringBuilder text = new StringBuilder();
+            final int omega = 1 + random.nextInt(15);
+            for(int i = 0; i < omega; i++) {
+                final int measureValue = random.nextInt(4) == 0 ? 100 + random.nextInt(1000) : 1 + random.nextInt(10);
+                text.append(random.nextInt(4)).append(',').append(random.nextInt(4)).append(',').append(random.nextInt(3)).append(',').append(measureValue).append('\n');
+            }
+            final Tensor tensor = load(text.toString(), 3);
+            final double maxDensity = maxDensity(tensor);
+            for(double epsilon : new double[]{0, 1}) {
+                final double density = density(tensor, findOneBlock(tensor, epsilon));
+                assertTrue("trial " + trial + ", epsilon " + epsilon + ": " + density + " for " + maxDensity, density >= maxDensity / ((1 + epsilon) * tensor.dimension) - 1e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/* =================================================================================
+ *
+ * M-Zoom: Fast Dense Block Detection in Tensors with Quality Guarantees.
+ * Authors: Kijung Shin, Bryan Hooi, and Christos Faloutsos
+ *
+ * Version: 2.0
+ * Date: Nov 8, 2016
+ * Main Contact: Kijung Shin (kijungs@cs.cmu.edu)
+ *
+ * This software is free of charge under research purposes.
+ * For commercial purposes, please contact the author.
+ *
+ * =================================================================================
+ */
+
+package mzoom;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests for the row-wise layout of tensors, which is still accepted by a constructor and returned by deprecated methods
+ * @author Kijung Shin (kijungs@cs.cmu.edu)
+ */
+public class TensorTest {
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void rowWiseLayoutRoundTrip() {
+        final int[][] attributes = {{0, 1}, {1, 0}, {0, 0}, {2, 1}};
+        final int[][][] attributeToValuesToTuples = {{{0, 2}, {1}, {3}}, {{1, 2}, {0, 3}}};
+        final int[] measureValues = {3, 1, 2, 5};
+        final String[][] intToStrValue = {{"a", "b", "c"}, {"x", "y"}};
+        final Tensor tensor = new Tensor(2, new int[]{3, 2}, attributeToValuesToTuples, 4, attributes, measureValues, 11, intToStrValue);
+        assertArrayEquals(attributes, tensor.attributes());
+        assertArrayEquals(attributeToValuesToTuples, tensor.attributeToValuesToTuples());
+    }
+}